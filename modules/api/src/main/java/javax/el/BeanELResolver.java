@@ -23,6 +23,7 @@ import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -67,38 +68,73 @@ public class BeanELResolver extends ELResolver {
 	}
 
 	protected static final class BeanProperty {
-		private final PropertyDescriptor descriptor;
-		
-		private Method readMethod;
-		private Method writedMethod;
+		private final Class<?> type;
+		private final Method readMethod;
+		private final Method writeMethod;
 
+		/*
+		 * Accessors are resolved (and prepared for fast invocation) once, when the bean class is
+		 * introspected. This keeps the per-access path free of lookups and synchronization.
+		 */
 		public BeanProperty(PropertyDescriptor descriptor) {
-			this.descriptor = descriptor;
+			this.type = descriptor.getPropertyType();
+			this.readMethod = findAccessibleMethod(descriptor.getReadMethod());
+			this.writeMethod = findAccessibleMethod(descriptor.getWriteMethod());
 		}
 
 		public Class<?> getPropertyType() {
-			return descriptor.getPropertyType();
+			return type;
 		}
 
 		public Method getReadMethod() {
-			if (readMethod == null) {
-				readMethod = findAccessibleMethod(descriptor.getReadMethod());
-			}
 			return readMethod;
 		}
 
 		public Method getWriteMethod() {
-			if (writedMethod == null) {
-				writedMethod = findAccessibleMethod(descriptor.getWriteMethod());
-			}
-			return writedMethod;
+			return writeMethod;
 		}
 
 		public boolean isReadOnly() {
-			return getWriteMethod() == null;
+			return writeMethod == null;
 		}
 	}
 
+	/*
+	 * Key for resolved methods: name plus parameter types (if given) or parameter count.
+	 */
+	private static final class MethodKey {
+		private final String name;
+		private final Class<?>[] types;
+		private final int count;
+		private final int hash;
+
+		MethodKey(String name, Class<?>[] types, int count) {
+			this.name = name;
+			this.types = types;
+			this.count = types == null ? count : -1;
+			this.hash = 31 * (31 * name.hashCode() + Arrays.hashCode(types)) + this.count;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this) {
+				return true;
+			}
+			if (!(obj instanceof MethodKey)) {
+				return false;
+			}
+			MethodKey other = (MethodKey)obj;
+			return hash == other.hash && count == other.count && name.equals(other.name) && Arrays.equals(types, other.types);
+		}
+	}
+
+	private static final Object[] NO_ARGS = new Object[0];
+
 	private static Method findPublicAccessibleMethod(Method method) {
 		if (method == null || !Modifier.isPublic(method.getModifiers())) {
 			return null;
@@ -141,12 +177,19 @@ public class BeanELResolver extends ELResolver {
 			} catch (SecurityException e) {
 				result = null; 
 			}
+		} else if (result != null && !result.isAccessible()) {
+			try {
+				result.setAccessible(true); // suppress access checks on invocation
+			} catch (RuntimeException e) {
+				// checks remain enabled...
+			}
 		}
 		return result;
 	}
 
 	private final boolean readOnly;
 	private final ConcurrentHashMap<Class<?>, BeanProperties> cache;
+	private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<MethodKey, Method>> methods;
 	
 	private ExpressionFactory defaultFactory;
 
@@ -163,6 +206,7 @@ public class BeanELResolver extends ELResolver {
 	public BeanELResolver(boolean readOnly) {
 		this.readOnly = readOnly;
 		this.cache = new ConcurrentHashMap<Class<?>, BeanProperties>();
+		this.methods = new ConcurrentHashMap<Class<?>, ConcurrentHashMap<MethodKey, Method>>();
 	}
 
 	/**
@@ -319,7 +363,7 @@ public class BeanELResolver extends ELResolver {
 				throw new PropertyNotFoundException("Cannot read property " + property);
 			}
 			try {
-				result = method.invoke(base);
+				result = method.invoke(base, NO_ARGS);
 			} catch (InvocationTargetException e) {
 				throw new ELException(e.getCause());
 			} catch (Exception e) {
@@ -489,7 +533,7 @@ public class BeanELResolver extends ELResolver {
 		Object result = null;
 		if (isResolvable(base)) {
 			if (params == null) {
-				params = new Object[0];
+				params = NO_ARGS;
 			}
 			String name = method.toString();
 			Method target = findMethod(base, name, paramTypes, params.length);
@@ -508,16 +552,39 @@ public class BeanELResolver extends ELResolver {
 		return result;
 	};
 
+	/*
+	 * Lookup a method, using the cache of previously resolved methods.
+	 */
 	private Method findMethod(Object base, String name, Class<?>[] types, int paramCount) {
+		Class<?> clazz = base.getClass();
+		ConcurrentHashMap<MethodKey, Method> resolved = methods.get(clazz);
+		if (resolved == null) {
+			ConcurrentHashMap<MethodKey, Method> newResolved = new ConcurrentHashMap<MethodKey, Method>();
+			resolved = methods.putIfAbsent(clazz, newResolved);
+			if (resolved == null) { // put succeeded, use new value
+				resolved = newResolved;
+			}
+		}
+		Method method = resolved.get(new MethodKey(name, types, paramCount));
+		if (method == null) {
+			method = findMethod(clazz, name, types, paramCount);
+			if (method != null) {
+				resolved.putIfAbsent(new MethodKey(name, types == null ? null : types.clone(), paramCount), method);
+			}
+		}
+		return method;
+	}
+
+	private Method findMethod(Class<?> clazz, String name, Class<?>[] types, int paramCount) {
 		if (types != null) {
 			try {
-				return findAccessibleMethod(base.getClass().getMethod(name, types));
+				return findAccessibleMethod(clazz.getMethod(name, types));
 			} catch (NoSuchMethodException e) {
 				return null;
 			}
 		}
 		Method varArgsMethod = null;
-		for (Method method : base.getClass().getMethods()) {
+		for (Method method : clazz.getMethods()) {
 			if (method.getName().equals(name)) {
 				int formalParamCount = method.getParameterTypes().length;
 				if (method.isVarArgs() && paramCount >= formalParamCount - 1) {
@@ -552,6 +619,9 @@ public class BeanELResolver extends ELResolver {
 	
 	private Object[] coerceParams(ExpressionFactory factory, Method method, Object[] params) {
 		Class<?>[] types = method.getParameterTypes();
+		if (types.length == 0 && params.length == 0) {
+			return NO_ARGS;
+		}
 		Object[] args = new Object[types.length];
 		if (method.isVarArgs()) {
 			int varargIndex = types.length - 1;
@@ -662,5 +732,11 @@ public class BeanELResolver extends ELResolver {
 				classes.remove();
 			}
 		}
+		classes = methods.keySet().iterator();
+		while (classes.hasNext()) {
+			if (loader == classes.next().getClassLoader()) {
+				classes.remove();
+			}
+		}
 	}
 }
@@ -299,6 +299,23 @@ public class BeanELResolverTest extends TestCase {
 		}
 	}
 
+	public void testInvokeResolved() throws Exception {
+		BeanELResolver resolver = new BeanELResolver();
+		Class<?>[] types = { int.class, int[].class };
+		for (int i = 0; i < 2; i++) {
+			assertEquals(3, resolver.invoke(context, new TestBean(), "add", types, new Object[]{1, new int[]{2}}));
+			assertEquals(1, resolver.invoke(context, new TestBean(), "add", null, new Object[]{1}));
+			assertEquals(3, resolver.invoke(context, new TestBean(), "add", null, new Object[]{1, 2}));
+		}
+		types[1] = long.class; // must not affect resolved methods
+		assertEquals(3, resolver.invoke(context, new TestBean(), "add", new Class[]{ int.class, int[].class }, new Object[]{1, new int[]{2}}));
+
+		java.lang.reflect.Method purge = BeanELResolver.class.getDeclaredMethod("purgeBeanClasses", ClassLoader.class);
+		purge.setAccessible(true);
+		purge.invoke(resolver, TestBean.class.getClassLoader());
+		assertEquals(1, resolver.invoke(context, new TestBean(), "add", null, new Object[]{1}));
+	}
+
 	public void testInvoke2() {
 		BeanELResolver resolver = new BeanELResolver();
 		assertEquals(42, resolver.invoke(context, new TestClass().getAnonymousTestInterface(), "getFourtyTwo", null, new Class[]{}));
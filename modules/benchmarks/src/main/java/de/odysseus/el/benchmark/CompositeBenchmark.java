@@ -0,0 +1,79 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.el.ValueExpression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.odysseus.el.TreeValueExpression;
+import de.odysseus.el.util.SimpleContext;
+
+/**
+ * Rendering of composite (template) expressions with a growing number of parts.
+ *
+ * @author Christoph Beck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompositeBenchmark {
+	@Param({ "1", "8", "64" })
+	public int lines;
+
+	private SimpleContext context;
+	private ValueExpression expression;
+	private StringBuilder buffer;
+
+	@Setup
+	public void setup() {
+		context = Fixture.createContext();
+		StringBuilder template = new StringBuilder();
+		for (int i = 0; i < lines; i++) {
+			template.append("<li>").append(i).append(": ${person.name} (${person.age + x}) - ${person.friend.name}</li>\n");
+		}
+		expression = Fixture.FACTORY.createValueExpression(context, template.toString(), String.class);
+		buffer = new StringBuilder(64 * lines);
+	}
+
+	@Benchmark
+	public Object render() {
+		return expression.getValue(context);
+	}
+
+	@Benchmark
+	public int stream() throws IOException {
+		buffer.setLength(0);
+		((TreeValueExpression)expression).render(context, buffer);
+		return buffer.length();
+	}
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.benchmark;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.odysseus.el.misc.TypeConverter;
+
+/**
+ * Type conversions. Parameter values are <code>source-&gt;target</code> pairs.
+ *
+ * @author Christoph Beck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConverterBenchmark {
+	enum Color { RED, GREEN, BLUE }
+
+	@Param({
+		"Long->Long", "Integer->Long", "String->Long", "Long->Double", "String->BigDecimal",
+		"Long->String", "String->Boolean", "String->Enum", "String->Object", "null->Long"
+	})
+	public String conversion;
+
+	private final TypeConverter converter = TypeConverter.DEFAULT;
+	private Object value;
+	private Class<?> type;
+
+	@Setup
+	public void setup() {
+		String source = conversion.substring(0, conversion.indexOf("->"));
+		String target = conversion.substring(conversion.indexOf("->") + 2);
+		if ("Long".equals(source)) {
+			value = 42l;
+		} else if ("Integer".equals(source)) {
+			value = 42;
+		} else if ("String".equals(source)) {
+			value = "Boolean".equals(target) ? "true" : "Enum".equals(target) ? "GREEN" : "42";
+		}
+		if ("Long".equals(target)) {
+			type = Long.class;
+		} else if ("Double".equals(target)) {
+			type = Double.class;
+		} else if ("BigDecimal".equals(target)) {
+			type = BigDecimal.class;
+		} else if ("String".equals(target)) {
+			type = String.class;
+		} else if ("Boolean".equals(target)) {
+			type = Boolean.class;
+		} else if ("Enum".equals(target)) {
+			type = Color.class;
+		} else {
+			type = Object.class;
+		}
+	}
+
+	@Benchmark
+	public Object convert() {
+		return converter.convert(value, type);
+	}
+}
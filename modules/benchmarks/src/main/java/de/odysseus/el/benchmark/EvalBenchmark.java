@@ -0,0 +1,99 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.el.ValueExpression;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.odysseus.el.util.SimpleContext;
+
+/**
+ * Evaluation of the various node kinds. Parameter values name the node kind under test
+ * (see {@link #EXPRESSIONS}).
+ *
+ * @author Christoph Beck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvalBenchmark {
+	static final String[][] EXPRESSIONS = {
+		{ "text", "foo" },
+		{ "string", "${'foo'}" },
+		{ "number", "${42}" },
+		{ "boolean", "${true}" },
+		{ "null", "${null}" },
+		{ "identifier", "${x}" },
+		{ "root", "${count}" },
+		{ "dot", "${person.name}" },
+		{ "bracket", "${person['name']}" },
+		{ "list", "${person.tags[1]}" },
+		{ "map", "${person.attributes.city}" },
+		{ "nested", "${person.friend.name}" },
+		{ "method", "${person.greet('Hello')}" },
+		{ "function", "${ns:twice(x)}" },
+		{ "binary", "${x * 2 + 1}" },
+		{ "unary", "${-x}" },
+		{ "compare", "${x < person.age}" },
+		{ "equals", "${s == 42}" },
+		{ "and", "${x > 1 && person.age > 1}" },
+		{ "empty", "${empty person.tags}" },
+		{ "choice", "${x > 5 ? 'big' : 'small'}" },
+		{ "nested-paren", "${(x + 1) * (x - 1)}" },
+		{ "composite", "Hello, ${person.name}!" }
+	};
+
+	@Param({
+		"text", "string", "number", "boolean", "null", "identifier", "root", "dot", "bracket", "list", "map",
+		"nested", "method", "function", "binary", "unary", "compare", "equals", "and", "empty", "choice",
+		"nested-paren", "composite"
+	})
+	public String node;
+
+	private SimpleContext context;
+	private ValueExpression expression;
+
+	@Setup
+	public void setup() {
+		context = Fixture.createContext();
+		for (String[] entry : EXPRESSIONS) {
+			if (entry[0].equals(node)) {
+				expression = Fixture.FACTORY.createValueExpression(context, entry[1], Object.class);
+			}
+		}
+	}
+
+	@Benchmark
+	public Object eval() {
+		return expression.getValue(context);
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.benchmark;
+
+import javax.el.ExpressionFactory;
+
+import de.odysseus.el.ExpressionFactoryImpl;
+import de.odysseus.el.util.SimpleContext;
+
+/**
+ * Shared benchmark setup.
+ *
+ * @author Christoph Beck
+ */
+final class Fixture {
+	static final ExpressionFactory FACTORY = new ExpressionFactoryImpl(ExpressionFactoryImpl.Profile.JEE6);
+
+	private Fixture() {
+	}
+
+	/**
+	 * Create a context providing variables <code>person</code> (a {@link Person} with a friend),
+	 * <code>x</code> (<code>long</code>), <code>s</code> (<code>String</code>), function
+	 * <code>ns:twice</code> and resolver property <code>count</code>.
+	 */
+	static SimpleContext createContext() {
+		SimpleContext context = new SimpleContext();
+		Person person = new Person("Alice", 42);
+		person.setFriend(new Person("Bob", 24));
+		context.setVariable("person", FACTORY.createValueExpression(person, Person.class));
+		context.setVariable("x", FACTORY.createValueExpression(7l, long.class));
+		context.setVariable("s", FACTORY.createValueExpression("42", String.class));
+		try {
+			context.setFunction("ns", "twice", Person.class.getMethod("twice", int.class));
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException(e);
+		}
+		context.getELResolver().setValue(context, null, "count", 3);
+		return context;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.impl.Builder;
+import de.odysseus.el.tree.impl.Scanner;
+
+/**
+ * Scanner and parser throughput.
+ *
+ * @author Christoph Beck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserBenchmark {
+	@Param({
+		"${person.name}",
+		"${x + 1 > 5 ? 'big' : 'small'}",
+		"${person.friend.greet('Hello') == 'Hello, Bob' and not empty person.tags}",
+		"Hello, ${person.name}! You are ${person.age} years old (${ns:twice(x)})."
+	})
+	public String expression;
+
+	private final Builder builder = new Builder(Builder.Feature.METHOD_INVOCATIONS, Builder.Feature.VARARGS);
+
+	@Benchmark
+	public void scan(Blackhole blackhole) throws Scanner.ScanException {
+		Scanner scanner = new Scanner(expression) {};
+		Scanner.Token token = scanner.next();
+		while (token.getSymbol() != Scanner.Symbol.EOF) {
+			blackhole.consume(token);
+			token = scanner.next();
+		}
+	}
+
+	@Benchmark
+	public Tree parse() {
+		return builder.build(expression);
+	}
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.benchmark;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bean used by the benchmarks.
+ *
+ * @author Christoph Beck
+ */
+public class Person {
+	private String name;
+	private int age;
+	private Person friend;
+	private final List<String> tags = new ArrayList<String>();
+	private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+	public Person(String name, int age) {
+		this.name = name;
+		this.age = age;
+		tags.add("foo");
+		tags.add("bar");
+		attributes.put("city", "Hamburg");
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public int getAge() {
+		return age;
+	}
+
+	public void setAge(int age) {
+		this.age = age;
+	}
+
+	public Person getFriend() {
+		return friend;
+	}
+
+	public void setFriend(Person friend) {
+		this.friend = friend;
+	}
+
+	public List<String> getTags() {
+		return tags;
+	}
+
+	public Map<String, Object> getAttributes() {
+		return attributes;
+	}
+
+	public String greet(String greeting) {
+		return greeting + ", " + name;
+	}
+
+	public static int twice(int value) {
+		return 2 * value;
+	}
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.el.BeanELResolver;
+import javax.el.ELContext;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Bean property and method access via {@link BeanELResolver}.
+ *
+ * @author Christoph Beck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResolverBenchmark {
+	private final BeanELResolver resolver = new BeanELResolver();
+	private final Person person = new Person("Alice", 42);
+	private final Class<?>[] types = { String.class };
+	private ELContext context;
+
+	@Setup
+	public void setup() {
+		context = Fixture.createContext();
+	}
+
+	@Benchmark
+	public Object getValue() {
+		return resolver.getValue(context, person, "name");
+	}
+
+	@Benchmark
+	public void setValue() {
+		resolver.setValue(context, person, "age", 42);
+	}
+
+	@Benchmark
+	public Object getType() {
+		return resolver.getType(context, person, "age");
+	}
+
+	@Benchmark
+	public Object invoke() {
+		return resolver.invoke(context, person, "greet", types, new Object[] { "Hello" });
+	}
+
+	@Benchmark
+	public Object invokeUntyped() {
+		return resolver.invoke(context, person, "greet", null, new Object[] { "Hello" });
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.TreeCache;
+import de.odysseus.el.tree.TreeStore;
+import de.odysseus.el.tree.impl.Builder;
+import de.odysseus.el.tree.impl.Cache;
+import de.odysseus.el.tree.impl.FrequencyCache;
+
+/**
+ * Tree store hit and miss paths.
+ *
+ * @author Christoph Beck
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TreeStoreBenchmark {
+	private static final int EXPRESSIONS = 4096;
+
+	@Param({ "Cache", "FrequencyCache" })
+	public String cache;
+
+	private final String[] expressions = new String[EXPRESSIONS];
+	private TreeStore hitStore;
+	private TreeStore missStore;
+
+	@State(Scope.Thread)
+	public static class Counter {
+		int index;
+	}
+
+	private TreeCache createCache(int size) {
+		return "FrequencyCache".equals(cache) ? new FrequencyCache(size) : new Cache(size);
+	}
+
+	@Setup
+	public void setup() {
+		Builder builder = new Builder();
+		for (int i = 0; i < EXPRESSIONS; i++) {
+			expressions[i] = "${person.name == 'p" + i + "'}";
+		}
+		hitStore = new TreeStore(builder, createCache(EXPRESSIONS));
+		for (String expression : expressions) {
+			hitStore.get(expression);
+		}
+		// cache is too small to ever hit when cycling through all expressions
+		missStore = new TreeStore(builder, createCache(16));
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Tree hit(Counter counter) {
+		return hitStore.get(expressions[counter.index++ & (EXPRESSIONS - 1)]);
+	}
+
+	@Benchmark
+	@Threads(4)
+	public Tree miss(Counter counter) {
+		return missStore.get(expressions[counter.index++ & (EXPRESSIONS - 1)]);
+	}
+}
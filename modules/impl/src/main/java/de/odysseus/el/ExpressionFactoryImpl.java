@@ -20,18 +20,30 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Constructor;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import javax.el.ELContext;
 import javax.el.ELException;
 import javax.el.ExpressionFactory;
 
+import de.odysseus.el.misc.Interner;
 import de.odysseus.el.misc.TypeConverter;
+import de.odysseus.el.tree.Tree;
 import de.odysseus.el.tree.TreeBuilder;
+import de.odysseus.el.tree.TreeCache;
 import de.odysseus.el.tree.TreeStore;
+import de.odysseus.el.tree.TreeStoreListener;
 import de.odysseus.el.tree.impl.Builder;
 import de.odysseus.el.tree.impl.Cache;
+import de.odysseus.el.tree.impl.PersistentCache;
+import de.odysseus.el.tree.impl.TreeBundle;
 import de.odysseus.el.tree.impl.Builder.Feature;
 
 /**
@@ -63,6 +75,35 @@ import de.odysseus.el.tree.impl.Builder.Feature;
  * <li>
  * <code>javax.el.cacheSize</code> - cache size (int, default is 1000)</li>
  * <li>
+ * <code>javax.el.cacheFile</code> - snapshot file used to persist parsed expressions across
+ * restarts (default is none).</li>
+ * <li>
+ * <code>javax.el.treeBundle</code> - file or classpath resource containing trees created by
+ * <code>de.odysseus.el.tree.impl.Precompiler</code>, which are preloaded into the tree store
+ * (default is none). The bundle must have been created with the same features, except for
+ * <code>javax.el.compile</code>; otherwise, creating the factory fails.</li>
+ * <li>
+ * <code>de.odysseus.el.tree.TreeCache</code> - tree cache implementation class (default is
+ * <code>de.odysseus.el.tree.impl.Cache</code>; use <code>de.odysseus.el.tree.impl.FrequencyCache</code>
+ * to keep frequently used expressions).</li>
+ * <li>
+ * <code>javax.el.compile</code> - compile frequently evaluated expressions to bytecode
+ * (boolean, default is <code>false</code>).</li>
+ * <li>
+ * <code>javax.el.constantFolding</code> - fold operators over literals at build time
+ * (boolean, default is <code>false</code>).</li>
+ * <li>
+ * <code>javax.el.intern</code> - share structural ids between equivalent value expressions,
+ * e.g. to save memory for large component trees (boolean, default is <code>false</code>).</li>
+ * <li>
+ * <code>javax.el.serializeTrees</code> - include parse trees when serializing expressions, so
+ * that deserialization does not parse the expression strings (boolean, default is
+ * <code>false</code>).</li>
+ * <li>
+ * <code>javax.el.registerStore</code> - register the factory's tree store for its builder, so
+ * that expressions deserialized anywhere in the virtual machine share its trees (boolean,
+ * default is <code>false</code>).</li>
+ * <li>
  * <code>javax.el.methodInvocations</code> - allow method invocations as in
  * <code>${foo.bar(baz)}</code> (boolean, default is <code>false</code>).</li>
  * <li>
@@ -128,14 +169,81 @@ public class ExpressionFactoryImpl extends javax.el.ExpressionFactory {
 	 * <code>javax.el.ignoreReturnType</code>
 	 */
 	public static final String PROP_IGNORE_RETURN_TYPE = "javax.el.ignoreReturnType";	
+
+	/**
+	 * <code>javax.el.compile</code>
+	 */
+	public static final String PROP_COMPILE = "javax.el.compile";
+
+	/**
+	 * <code>javax.el.constantFolding</code>
+	 */
+	public static final String PROP_CONSTANT_FOLDING = "javax.el.constantFolding";
 	
 	/**
 	 * <code>javax.el.cacheSize</code>
 	 */
 	public static final String PROP_CACHE_SIZE = "javax.el.cacheSize";
 
+	/**
+	 * <code>javax.el.cacheFile</code>
+	 */
+	public static final String PROP_CACHE_FILE = "javax.el.cacheFile";
+
+	/**
+	 * <code>javax.el.treeBundle</code>
+	 */
+	public static final String PROP_TREE_BUNDLE = "javax.el.treeBundle";
+
+	/**
+	 * <code>javax.el.intern</code>
+	 */
+	public static final String PROP_INTERN = "javax.el.intern";
+
+	/**
+	 * <code>javax.el.serializeTrees</code>
+	 */
+	public static final String PROP_SERIALIZE_TREES = "javax.el.serializeTrees";
+
+	/**
+	 * <code>javax.el.registerStore</code>
+	 */
+	public static final String PROP_REGISTER_STORE = "javax.el.registerStore";
+
+	/**
+	 * Result of a bulk expression creation (see
+	 * {@link ExpressionFactoryImpl#createValueExpressions(ELContext, Map, Executor)}).
+	 */
+	public static final class Batch {
+		private final Map<String, TreeValueExpression> expressions;
+		private final Map<String, ELException> errors;
+
+		Batch(Map<String, TreeValueExpression> expressions, Map<String, ELException> errors) {
+			this.expressions = Collections.unmodifiableMap(expressions);
+			this.errors = Collections.unmodifiableMap(errors);
+		}
+
+		/**
+		 * @return created expressions by expression string
+		 */
+		public Map<String, TreeValueExpression> getExpressions() {
+			return expressions;
+		}
+
+		/**
+		 * @return parse or binding errors by expression string
+		 */
+		public Map<String, ELException> getErrors() {
+			return errors;
+		}
+	}
+
+	private static final Logger LOG = Logger.getLogger(ExpressionFactoryImpl.class.getName());
+
 	private final TreeStore store;
 	private final TypeConverter converter;
+	private final Interner<String> structureInterner;
+	private final boolean serializeTrees;
 
 	/**
 	 * Create a new expression factory using the default builder and cache implementations. The
@@ -162,6 +270,8 @@ public class ExpressionFactoryImpl extends javax.el.ExpressionFactory {
 		Properties properties = loadProperties("el.properties");
 		this.store = createTreeStore(1000, profile, properties);
 		this.converter = createTypeConverter(properties);
+		this.structureInterner = isInterning(properties) ? new Interner<String>() : null;
+		this.serializeTrees = properties != null && Boolean.valueOf(properties.getProperty(PROP_SERIALIZE_TREES));
 	}
 
 	/**
@@ -192,6 +302,8 @@ public class ExpressionFactoryImpl extends javax.el.ExpressionFactory {
 	public ExpressionFactoryImpl(Profile profile, Properties properties) {
 		this.store = createTreeStore(1000, profile, properties);
 		this.converter = createTypeConverter(properties);
+		this.structureInterner = isInterning(properties) ? new Interner<String>() : null;
+		this.serializeTrees = properties != null && Boolean.valueOf(properties.getProperty(PROP_SERIALIZE_TREES));
 	}
 
 	/**
@@ -226,6 +338,8 @@ public class ExpressionFactoryImpl extends javax.el.ExpressionFactory {
 	public ExpressionFactoryImpl(Profile profile, Properties properties, TypeConverter converter) {
 		this.store = createTreeStore(1000, profile, properties);
 		this.converter = converter;
+		this.structureInterner = isInterning(properties) ? new Interner<String>() : null;
+		this.serializeTrees = properties != null && Boolean.valueOf(properties.getProperty(PROP_SERIALIZE_TREES));
 	}
 
 	/**
@@ -249,6 +363,12 @@ public class ExpressionFactoryImpl extends javax.el.ExpressionFactory {
 	public ExpressionFactoryImpl(TreeStore store, TypeConverter converter) {
 		this.store = store;
 		this.converter = converter;
+		this.structureInterner = null;
+		this.serializeTrees = false;
+	}
+
+	private static boolean isInterning(Properties properties) {
+		return properties != null && Boolean.valueOf(properties.getProperty(PROP_INTERN));
 	}
 
 	private Properties loadDefaultProperties() {
@@ -318,7 +438,19 @@ public class ExpressionFactoryImpl extends javax.el.ExpressionFactory {
 	 * Create the factory's tree store. This implementation creates a new tree store using the
 	 * default builder and cache implementations. The builder and cache are configured using the
 	 * specified properties. The maximum cache size will be as specified unless overridden by
-	 * property <code>javax.el.cacheSize</code>.
+	 * property <code>javax.el.cacheSize</code>. If property <code>javax.el.cacheFile</code> is
+	 * set, the cache is backed by the given snapshot file: trees are loaded from the file on
+	 * creation and saved to it when the virtual machine exits or the factory is closed (see
+	 * {@link PersistentCache} and {@link #close()}). If property <code>javax.el.treeBundle</code>
+	 * is set, the trees contained in the given bundle
+	 * file or classpath resource are preloaded (see {@link TreeStore#preload(java.util.Map)}). If property
+	 * <code>de.odysseus.el.tree.TreeStoreListener</code> is set to the name of a class implementing
+	 * the <code>de.odysseus.el.tree.TreeStoreListener</code> interface, an instance of that class is
+	 * registered with the store (e.g. to bridge cache statistics to an application's metrics).
+	 * If property <code>javax.el.registerStore</code> is <code>true</code>, the store is registered
+	 * for its builder (see {@link TreeStore#register(TreeStore)}), so that deserialized expressions
+	 * get their trees from its cache. The registry is global to the virtual machine, so this should
+	 * only be enabled for one factory per builder configuration.
 	 */
 	protected TreeStore createTreeStore(int defaultCacheSize, Profile profile, Properties properties) {
 		// create builder
@@ -339,6 +471,12 @@ public class ExpressionFactoryImpl extends javax.el.ExpressionFactory {
 			if (getFeatureProperty(profile, properties, Feature.IGNORE_RETURN_TYPE, PROP_IGNORE_RETURN_TYPE)) {
 				features.add(Builder.Feature.IGNORE_RETURN_TYPE);
 			}
+			if (getFeatureProperty(profile, properties, Feature.COMPILE, PROP_COMPILE)) {
+				features.add(Builder.Feature.COMPILE);
+			}
+			if (getFeatureProperty(profile, properties, Feature.CONSTANT_FOLDING, PROP_CONSTANT_FOLDING)) {
+				features.add(Builder.Feature.CONSTANT_FOLDING);
+			}
 			builder = createTreeBuilder(properties, features.toArray(new Builder.Feature[0]));
 		}
 
@@ -351,9 +489,99 @@ public class ExpressionFactoryImpl extends javax.el.ExpressionFactory {
 				throw new ELException("Cannot parse EL property " + PROP_CACHE_SIZE, e);
 			}
 		}
-		Cache cache = cacheSize > 0 ? new Cache(cacheSize) : null;
+		TreeCache cache = cacheSize > 0 ? createTreeCache(cacheSize, properties) : null;
+		if (cache != null && builder instanceof Builder && properties != null && properties.containsKey(PROP_CACHE_FILE)) {
+			PersistentCache persistentCache =
+				new PersistentCache(cache, (Builder)builder, new File(properties.getProperty(PROP_CACHE_FILE)), cacheSize);
+			try {
+				persistentCache.load();
+			} catch (IOException e) {
+				LOG.log(Level.WARNING, "Cannot load snapshot file " + persistentCache.getFile() + ", starting with an empty cache", e);
+			}
+			persistentCache.saveOnShutdown();
+			cache = persistentCache;
+		}
 
-		return new TreeStore(builder, cache);
+		TreeStore store = new TreeStore(builder, cache);
+
+		// preload trees
+		if (builder instanceof Builder && properties != null && properties.containsKey(PROP_TREE_BUNDLE)) {
+			store.preload(loadTreeBundle((Builder)builder, properties.getProperty(PROP_TREE_BUNDLE)));
+		}
+
+		// register listener
+		Class<?> clazz = load(TreeStoreListener.class, properties);
+		if (clazz != null) {
+			try {
+				store.setListener(TreeStoreListener.class.cast(clazz.newInstance()));
+			} catch (Exception e) {
+				throw new ELException("TreeStoreListener " + clazz + " could not be instantiated", e);
+			}
+		}
+
+		// share trees with deserialized expressions
+		if (properties != null && Boolean.valueOf(properties.getProperty(PROP_REGISTER_STORE))) {
+			TreeStore.register(store);
+		}
+
+		return store;
+	}
+
+	private Map<String, Tree> loadTreeBundle(Builder builder, String path) {
+		InputStream input = null;
+		try {
+			File file = new File(path);
+			if (file.isFile()) {
+				input = new FileInputStream(file);
+			} else {
+				try {
+					input = Thread.currentThread().getContextClassLoader().getResourceAsStream(path);
+				} catch (SecurityException e) {
+					input = ClassLoader.getSystemResourceAsStream(path);
+				}
+				if (input == null) {
+					throw new ELException("Cannot find tree bundle " + path);
+				}
+			}
+			return TreeBundle.read(builder, input);
+		} catch (IOException e) {
+			throw new ELException("Cannot read tree bundle " + path, e);
+		} finally {
+			if (input != null) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					// ignore...
+				}
+			}
+		}
+	}
+
+	/**
+	 * Create the factory's tree cache. This implementation takes the
+	 * <code>de.odysseus.el.tree.TreeCache</code> property as the name of a class implementing the
+	 * <code>de.odysseus.el.tree.TreeCache</code> interface (e.g.
+	 * <code>de.odysseus.el.tree.impl.FrequencyCache</code>). If the property is not set, a plain
+	 * <code>de.odysseus.el.tree.impl.Cache</code> is used. If the configured class provides a
+	 * constructor taking an <code>int</code>, this constructor will be invoked with the cache size.
+	 * Otherwise, the default constructor will be used.
+	 */
+	protected TreeCache createTreeCache(int cacheSize, Properties properties) {
+		Class<?> clazz = load(TreeCache.class, properties);
+		if (clazz == null) {
+			return new Cache(cacheSize);
+		}
+		try {
+			Constructor<?> constructor = null;
+			try {
+				constructor = clazz.getConstructor(int.class);
+			} catch (NoSuchMethodException e) {
+				return TreeCache.class.cast(clazz.newInstance());
+			}
+			return TreeCache.class.cast(constructor.newInstance(cacheSize));
+		} catch (Exception e) {
+			throw new ELException("TreeCache " + clazz + " could not be instantiated", e);
+		}
 	}
 
 	/**
@@ -442,14 +670,95 @@ public class ExpressionFactoryImpl extends javax.el.ExpressionFactory {
 
 	@Override
 	public final TreeValueExpression createValueExpression(ELContext context, String expression, Class<?> expectedType) {
-		return new TreeValueExpression(store, context.getFunctionMapper(), context.getVariableMapper(), converter,
-				expression, expectedType);
+		return createValueExpression(context, store.get(expression), expression, expectedType);
+	}
+
+	private TreeValueExpression createValueExpression(ELContext context, Tree tree, String expression, Class<?> expectedType) {
+		TreeValueExpression result = new TreeValueExpression(store.getBuilder(), tree, context.getFunctionMapper(),
+				context.getVariableMapper(), converter, expression, expectedType);
+		if (structureInterner != null) {
+			result.intern(structureInterner);
+		}
+		if (serializeTrees) {
+			result.setSerializeTree(true);
+		}
+		return result;
+	}
+
+	/**
+	 * Create value expressions in bulk. The expressions are parsed in parallel using the given
+	 * executor (see {@link TreeStore#load(java.util.Collection, Executor)}) and bound to the
+	 * resulting trees, so no expression is parsed twice, even if the cache is too small to hold
+	 * all of them.
+	 * Binding functions and variables takes place in the calling thread, since an
+	 * <code>ELContext</code> is not meant to be used concurrently. Expressions which cannot be
+	 * parsed or bound are reported as errors instead of failing the whole batch.
+	 * @param context used to bind functions and variables
+	 * @param expressions expected types by expression string
+	 * @param executor executor used to parse the expressions (<code>null</code> to use one thread
+	 * per available processor)
+	 * @return created expressions and errors
+	 * @throws ELException if the calling thread is interrupted
+	 */
+	public final Batch createValueExpressions(ELContext context, Map<String, Class<?>> expressions, Executor executor) {
+		TreeStore.LoadResult loaded;
+		try {
+			if (executor == null) {
+				loaded = store.load(expressions.keySet());
+			} else {
+				loaded = store.load(expressions.keySet(), executor);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ELException(e);
+		}
+		Map<String, TreeValueExpression> result = new LinkedHashMap<String, TreeValueExpression>();
+		Map<String, ELException> errors = new LinkedHashMap<String, ELException>();
+		for (Map.Entry<String, Class<?>> entry : expressions.entrySet()) {
+			String expression = entry.getKey();
+			if (loaded.getErrors().containsKey(expression)) {
+				errors.put(expression, loaded.getErrors().get(expression));
+			} else {
+				try {
+					Tree tree = loaded.getTrees().get(expression);
+					result.put(expression, createValueExpression(context, tree, expression, entry.getValue()));
+				} catch (ELException e) {
+					errors.put(expression, e);
+				}
+			}
+		}
+		return new Batch(result, errors);
 	}
 
 	@Override
 	public final TreeMethodExpression createMethodExpression(ELContext context, String expression,
 			Class<?> expectedReturnType, Class<?>[] expectedParamTypes) {
-		return new TreeMethodExpression(store, context.getFunctionMapper(), context.getVariableMapper(), converter,
-				expression, expectedReturnType, expectedParamTypes);
+		TreeMethodExpression result = new TreeMethodExpression(store, context.getFunctionMapper(),
+				context.getVariableMapper(), converter, expression, expectedReturnType, expectedParamTypes);
+		if (serializeTrees) {
+			result.setSerializeTree(true);
+		}
+		return result;
+	}
+
+	/**
+	 * Release the factory's tree store. The store is unregistered (see
+	 * {@link TreeStore#unregister(TreeStore)}) and, if its cache is a {@link PersistentCache}, the
+	 * snapshot is saved and the cache is no longer saved on shutdown (see
+	 * {@link PersistentCache#close()}). Applications should call this method when the factory is
+	 * no longer used (e.g. when a web application is undeployed), so that the shutdown hook
+	 * does not keep the application's class loader alive.
+	 * @throws ELException if the snapshot cannot be saved
+	 */
+	public void close() {
+		TreeStore.unregister(store);
+		if (store.getCache() instanceof PersistentCache) {
+			PersistentCache cache = (PersistentCache)store.getCache();
+			try {
+				cache.close();
+			} catch (IOException e) {
+				throw new ELException("Cannot save snapshot file " + cache.getFile(), e);
+			}
+		}
 	}
 }
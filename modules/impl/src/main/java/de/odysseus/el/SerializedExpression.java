@@ -0,0 +1,191 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.io.ObjectStreamException;
+
+import javax.el.ELException;
+
+import de.odysseus.el.tree.Bindings;
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.TreeBuilder;
+import de.odysseus.el.tree.TreeStore;
+import de.odysseus.el.tree.impl.Builder;
+import de.odysseus.el.tree.impl.TreeCodec;
+
+/**
+ * Serialized form of {@link TreeValueExpression} and {@link TreeMethodExpression}.
+ *
+ * The layout is: format version, flags, builder, expression string, expected type, parameter
+ * types (method expressions only), bindings (see {@link Bindings#write(ObjectOutput)}) and,
+ * if flag <code>TREE</code> is set, the codec signature, the length of the encoded tree and the
+ * encoded tree (see {@link TreeCodec}). Builder, signature and classes are written as objects,
+ * so that a stream holding many expressions contains each of them only once.
+ *
+ * Trees are taken from the store registered for the builder, if any. Otherwise, if the tree is
+ * present and has been encoded by a compatible codec, it is decoded instead of parsing the
+ * expression string (and put into the registered store's cache). Expressions restored from a
+ * stream containing the tree will include it again when serialized.
+ *
+ * @author Christoph Beck
+ */
+final class SerializedExpression implements Externalizable {
+	private static final long serialVersionUID = 1L;
+
+	private static final int VERSION = 1;
+
+	private static final int METHOD = 1;
+	private static final int TREE = 2;
+
+	private TreeBuilder builder;
+	private Bindings bindings;
+	private String expr;
+	private Class<?> type;
+	private Class<?>[] types;
+	private boolean method;
+	private Tree tree;
+	private boolean serializeTree;
+
+	/**
+	 * Constructor used by deserialization.
+	 */
+	public SerializedExpression() {
+		super();
+	}
+
+	/**
+	 * Create serialized form.
+	 * @param serializeTree whether to include the parse tree
+	 */
+	SerializedExpression(TreeBuilder builder, Bindings bindings, String expr, Class<?> type, Class<?>[] types, boolean method, Tree tree, boolean serializeTree) {
+		this.builder = builder;
+		this.bindings = bindings;
+		this.expr = expr;
+		this.type = type;
+		this.types = types;
+		this.method = method;
+		this.tree = tree;
+		this.serializeTree = serializeTree;
+	}
+
+	public void writeExternal(ObjectOutput out) throws IOException {
+		TreeCodec codec = null;
+		if (serializeTree && builder instanceof Builder) {
+			codec = new TreeCodec((Builder)builder);
+			if (!codec.isEncodable(tree)) {
+				codec = null;
+			}
+		}
+		out.writeByte(VERSION);
+		out.writeByte((method ? METHOD : 0) | (codec != null ? TREE : 0));
+		out.writeObject(builder);
+		out.writeObject(expr);
+		out.writeObject(type);
+		if (method) {
+			out.writeInt(types == null ? -1 : types.length);
+			if (types != null) {
+				for (Class<?> paramType : types) {
+					out.writeObject(paramType);
+				}
+			}
+		}
+		bindings.write(out);
+		if (codec != null) {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			codec.encode(tree, new DataOutputStream(bytes));
+			out.writeObject(codec.getSignature());
+			out.writeInt(bytes.size());
+			out.write(bytes.toByteArray());
+		}
+	}
+
+	public void readExternal(ObjectInput in) throws IOException, ClassNotFoundException {
+		int version = in.readByte();
+		if (version != VERSION) {
+			throw new InvalidObjectException("Unsupported expression format: " + version);
+		}
+		int flags = in.readByte();
+		method = (flags & METHOD) != 0;
+		builder = (TreeBuilder)in.readObject();
+		expr = (String)in.readObject();
+		type = (Class<?>)in.readObject();
+		if (method) {
+			int length = in.readInt();
+			if (length >= 0) {
+				types = new Class<?>[length];
+				for (int i = 0; i < length; i++) {
+					types[i] = (Class<?>)in.readObject();
+				}
+			}
+		}
+		bindings = Bindings.read(in);
+		serializeTree = (flags & TREE) != 0;
+		String signature = null;
+		byte[] bytes = null;
+		if (serializeTree) {
+			signature = (String)in.readObject();
+			bytes = new byte[in.readInt()];
+			in.readFully(bytes);
+		}
+		TreeStore store = TreeStore.lookup(builder);
+		if (store != null) {
+			builder = store.getBuilder();
+			tree = store.getIfPresent(expr);
+		}
+		if (tree == null && bytes != null && builder instanceof Builder) {
+			TreeCodec codec = new TreeCodec((Builder)builder);
+			if (codec.getSignature().equals(signature)) {
+				tree = codec.decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+				if (store != null) {
+					store.put(expr, tree);
+				}
+			}
+		}
+		if (tree == null) {
+			tree = getTree(builder, expr);
+		}
+	}
+
+	/**
+	 * Get a tree from the store registered for the given builder (see
+	 * {@link TreeStore#register(TreeStore)}) or parse it if there is no such store.
+	 * @throws IOException if the expression cannot be parsed
+	 */
+	static Tree getTree(TreeBuilder builder, String expr) throws IOException {
+		TreeStore store = TreeStore.lookup(builder);
+		try {
+			return store == null ? builder.build(expr) : store.get(expr);
+		} catch (ELException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	private Object readResolve() throws ObjectStreamException {
+		if (method) {
+			return new TreeMethodExpression(builder, bindings, expr, type, types, tree, serializeTree);
+		}
+		return new TreeValueExpression(builder, bindings, expr, type, tree, serializeTree);
+	}
+}
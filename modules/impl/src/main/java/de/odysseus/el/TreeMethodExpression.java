@@ -17,6 +17,7 @@ package de.odysseus.el;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
 import java.io.PrintWriter;
 import java.util.Arrays;
 
@@ -33,6 +34,7 @@ import de.odysseus.el.tree.ExpressionNode;
 import de.odysseus.el.tree.Tree;
 import de.odysseus.el.tree.TreeBuilder;
 import de.odysseus.el.tree.TreeStore;
+import de.odysseus.el.tree.impl.ast.AstNode;
 import de.odysseus.el.tree.NodePrinter;
 
 /**
@@ -55,8 +57,14 @@ public final class TreeMethodExpression extends javax.el.MethodExpression {
 
 	private transient ExpressionNode node;
 
+	private transient Tree tree;
+
+	private transient boolean serializeTree;
+
 	private String structure;
 
+	private transient int hash;
+
 	/**
 	 * Create a new method expression.
 	 * The expression must be an lvalue expression or literal text.
@@ -82,6 +90,7 @@ public final class TreeMethodExpression extends javax.el.MethodExpression {
 		this.types = paramTypes;
 		this.node = tree.getRoot();
 		this.deferred = tree.isDeferred();
+		this.tree = tree;
 
 		if (node.isLiteralText()) {
 			if (returnType == void.class || returnType == Void.class) {
@@ -97,12 +106,52 @@ public final class TreeMethodExpression extends javax.el.MethodExpression {
 		}
 	}
 
+	/**
+	 * Create a method expression from its serialized form.
+	 */
+	TreeMethodExpression(TreeBuilder builder, Bindings bindings, String expr, Class<?> returnType, Class<?>[] paramTypes, Tree tree, boolean serializeTree) {
+		super();
+
+		this.builder = builder;
+		this.bindings = bindings;
+		this.expr = expr;
+		this.type = returnType;
+		this.types = paramTypes;
+		this.node = tree.getRoot();
+		this.deferred = tree.isDeferred();
+		this.tree = tree;
+		this.serializeTree = serializeTree;
+	}
+
+	/**
+	 * Include the parse tree when serializing this expression (called by the factory before
+	 * handing out the expression).
+	 */
+	void setSerializeTree(boolean serializeTree) {
+		this.serializeTree = serializeTree;
+	}
+
 	private String getStructuralId() {
 		if (structure == null) {
 			structure = node.getStructuralId(bindings);
 		}
 		return structure;
 	}
+
+	/**
+	 * Answer the hash code of the structural id. For the standard node types, the hash is
+	 * computed without building the structural id.
+	 */
+	private int getStructuralHash() {
+		if (hash == 0) {
+			if (structure == null && node instanceof AstNode) {
+				hash = ((AstNode)node).getStructuralHash(bindings);
+			} else {
+				hash = getStructuralId().hashCode();
+			}
+		}
+		return hash;
+	}
 	
   /**
    * Evaluates the expression and answers information about the method
@@ -181,14 +230,19 @@ public final class TreeMethodExpression extends javax.el.MethodExpression {
 			if (!Arrays.equals(types, other.types)) {
 				return false;
 			}			
-			return getStructuralId().equals(other.getStructuralId()) && bindings.equals(other.bindings);
+			if (node == other.node) { // same tree
+				return bindings.equals(other.bindings);
+			}
+			return getStructuralHash() == other.getStructuralHash()
+				&& getStructuralId().equals(other.getStructuralId())
+				&& bindings.equals(other.bindings);
 		}
 		return false;
 	}
 
 	@Override
 	public int hashCode() {
-		return getStructuralId().hashCode();
+		return getStructuralHash();
 	}
 
 	@Override
@@ -204,12 +258,19 @@ public final class TreeMethodExpression extends javax.el.MethodExpression {
 		NodePrinter.dump(writer, node);
 	}
 
+	/**
+	 * Serialize this expression in compact form (see {@link SerializedExpression}).
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return new SerializedExpression(builder, bindings, expr, type, types, true, tree, serializeTree);
+	}
+
+	/**
+	 * Read expressions serialized by previous versions.
+	 */
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
 		in.defaultReadObject();
-		try {
-			node = builder.build(expr).getRoot();
-		} catch (ELException e) {
-			throw new IOException(e.getMessage());
-		}
+		tree = SerializedExpression.getTree(builder, expr);
+		node = tree.getRoot();
 	}	
 }
@@ -17,6 +17,7 @@ package de.odysseus.el;
 
 import java.io.IOException;
 import java.io.ObjectInputStream;
+import java.io.ObjectStreamException;
 import java.io.PrintWriter;
 
 import javax.el.ELContext;
@@ -25,6 +26,7 @@ import javax.el.FunctionMapper;
 import javax.el.ValueReference;
 import javax.el.VariableMapper;
 
+import de.odysseus.el.misc.Interner;
 import de.odysseus.el.misc.LocalMessages;
 import de.odysseus.el.misc.TypeConverter;
 import de.odysseus.el.tree.Bindings;
@@ -33,6 +35,7 @@ import de.odysseus.el.tree.NodePrinter;
 import de.odysseus.el.tree.Tree;
 import de.odysseus.el.tree.TreeBuilder;
 import de.odysseus.el.tree.TreeStore;
+import de.odysseus.el.tree.impl.ast.AstNode;
 
 /**
  * A value expression is ready to be evaluated (by calling either
@@ -54,8 +57,14 @@ public final class TreeValueExpression extends javax.el.ValueExpression {
 
 	private transient ExpressionNode node;
 
+	private transient Tree tree;
+
+	private transient boolean serializeTree;
+
 	private String structure;
 
+	private transient int hash;
+
 	/**
 	 * Create a new value expression.
 	 * @param store used to get the parse tree from.
@@ -65,28 +74,83 @@ public final class TreeValueExpression extends javax.el.ValueExpression {
 	 * @param type the expected type (may be <code>null</code>)
 	 */
 	public TreeValueExpression(TreeStore store, FunctionMapper functions, VariableMapper variables, TypeConverter converter, String expr, Class<?> type) {
-		super();
+		this(store.getBuilder(), store.get(expr), functions, variables, converter, expr, type);
+	}
 
-		Tree tree = store.get(expr);
+	/**
+	 * Create a new value expression from a tree obtained by the caller.
+	 * @param builder the builder used to parse the tree
+	 * @param tree the parse tree of the expression string
+	 */
+	TreeValueExpression(TreeBuilder builder, Tree tree, FunctionMapper functions, VariableMapper variables, TypeConverter converter, String expr, Class<?> type) {
+		super();
 
-		this.builder = store.getBuilder();
+		this.builder = builder;
 		this.bindings = tree.bind(functions, variables, converter);
 		this.expr = expr;
 		this.type = type;
 		this.node = tree.getRoot();
 		this.deferred = tree.isDeferred();
+		this.tree = tree;
 		
 		if (type == null) {
 			throw new NullPointerException(LocalMessages.get("error.value.notype"));
 		}
 	}
 
+	/**
+	 * Create a value expression from its serialized form.
+	 */
+	TreeValueExpression(TreeBuilder builder, Bindings bindings, String expr, Class<?> type, Tree tree, boolean serializeTree) {
+		super();
+
+		this.builder = builder;
+		this.bindings = bindings;
+		this.expr = expr;
+		this.type = type;
+		this.node = tree.getRoot();
+		this.deferred = tree.isDeferred();
+		this.tree = tree;
+		this.serializeTree = serializeTree;
+	}
+
 	private String getStructuralId() {
 		if (structure == null) {
 			structure = node.getStructuralId(bindings);
 		}
 		return structure;
 	}
+
+	/**
+	 * Answer the hash code of the structural id. For the standard node types, the hash is
+	 * computed without building the structural id.
+	 */
+	private int getStructuralHash() {
+		if (hash == 0) {
+			if (structure == null && node instanceof AstNode) {
+				hash = ((AstNode)node).getStructuralHash(bindings);
+			} else {
+				hash = getStructuralId().hashCode();
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Replace the structural id by its canonical instance (called by the factory before handing
+	 * out the expression).
+	 */
+	void intern(Interner<String> structureInterner) {
+		structure = structureInterner.intern(getStructuralId());
+	}
+
+	/**
+	 * Include the parse tree when serializing this expression (called by the factory before
+	 * handing out the expression).
+	 */
+	void setSerializeTree(boolean serializeTree) {
+		this.serializeTree = serializeTree;
+	}
 	
 	@Override
 	public Class<?> getExpectedType() {
@@ -122,6 +186,26 @@ public final class TreeValueExpression extends javax.el.ValueExpression {
 		return node.getValue(bindings, context, type);
 	}
 
+	/**
+	 * Evaluates the expression as an rvalue and appends the result, coerced to <code>String</code>,
+	 * to the given appendable (e.g. a response writer). For composite expressions like
+	 * <code>Hello, ${name}!</code> and an expected type of <code>String</code> or
+	 * <code>Object</code>, the text parts and evaluated values are written one after another,
+	 * without creating the result string.
+	 * Note that the appendable may have received part of the output if evaluation fails.
+	 * @param context used to resolve properties (<code>base.property</code> and <code>base[property]</code>)
+	 * @param out the appendable to write to
+	 * @throws ELException if evaluation fails (e.g. property not found, type conversion failed, ...)
+	 * @throws IOException if writing to the appendable fails
+	 */
+	public void render(ELContext context, Appendable out) throws ELException, IOException {
+		if (node instanceof AstNode && (type == String.class || type == Object.class)) {
+			((AstNode)node).appendValue(out, bindings, context);
+		} else {
+			out.append(bindings.convert(getValue(context), String.class));
+		}
+	}
+
 	/**
    * Evaluates the expression as an lvalue and determines if {@link #setValue(ELContext, Object)}
    * will always fail.
@@ -197,14 +281,19 @@ public final class TreeValueExpression extends javax.el.ValueExpression {
 			if (type != other.type) {
 				return false;
 			}
-			return getStructuralId().equals(other.getStructuralId()) && bindings.equals(other.bindings);
+			if (node == other.node) { // same tree
+				return bindings.equals(other.bindings);
+			}
+			return getStructuralHash() == other.getStructuralHash()
+				&& getStructuralId().equals(other.getStructuralId())
+				&& bindings.equals(other.bindings);
 		}
 		return false;
 	}
 
 	@Override
 	public int hashCode() {
-		return getStructuralId().hashCode();
+		return getStructuralHash();
 	}
 
 	@Override
@@ -220,12 +309,19 @@ public final class TreeValueExpression extends javax.el.ValueExpression {
 		NodePrinter.dump(writer, node);
 	}
 
+	/**
+	 * Serialize this expression in compact form (see {@link SerializedExpression}).
+	 */
+	private Object writeReplace() throws ObjectStreamException {
+		return new SerializedExpression(builder, bindings, expr, type, null, false, tree, serializeTree);
+	}
+
+	/**
+	 * Read expressions serialized by previous versions.
+	 */
 	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
 		in.defaultReadObject();
-		try {
-			node = builder.build(expr).getRoot();
-		} catch (ELException e) {
-			throw new IOException(e.getMessage());
-		}
+		tree = SerializedExpression.getTree(builder, expr);
+		node = tree.getRoot();
 	}	
 }
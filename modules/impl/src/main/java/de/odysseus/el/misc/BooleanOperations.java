@@ -39,6 +39,14 @@ public class BooleanOperations {
 
 	@SuppressWarnings("unchecked")
 	private static final boolean lt0(TypeConverter converter, Object o1, Object o2) {
+		int k1 = NumberOperations.kind(o1);
+		int k2 = NumberOperations.kind(o2);
+		if (k1 == NumberOperations.LONG && k2 == NumberOperations.LONG) {
+			return ((Number)o1).longValue() < ((Number)o2).longValue();
+		}
+		if (k1 != NumberOperations.OTHER && k2 != NumberOperations.OTHER) {
+			return ((Number)o1).doubleValue() < ((Number)o2).doubleValue();
+		}
 		Class<?> t1 = o1.getClass();
 		Class<?> t2 = o2.getClass();
 		if (BigDecimal.class.isAssignableFrom(t1) || BigDecimal.class.isAssignableFrom(t2)) {
@@ -66,7 +74,15 @@ public class BooleanOperations {
 	}
 
 	@SuppressWarnings("unchecked")
-	private static final boolean gt0(TypeConverter converter, Object o1, Object o2) {		
+	private static final boolean gt0(TypeConverter converter, Object o1, Object o2) {
+		int k1 = NumberOperations.kind(o1);
+		int k2 = NumberOperations.kind(o2);
+		if (k1 == NumberOperations.LONG && k2 == NumberOperations.LONG) {
+			return ((Number)o1).longValue() > ((Number)o2).longValue();
+		}
+		if (k1 != NumberOperations.OTHER && k2 != NumberOperations.OTHER) {
+			return ((Number)o1).doubleValue() > ((Number)o2).doubleValue();
+		}		
 		Class<?> t1 = o1.getClass();
 		Class<?> t2 = o2.getClass();
 		if (BigDecimal.class.isAssignableFrom(t1) || BigDecimal.class.isAssignableFrom(t2)) {
@@ -140,6 +156,14 @@ public class BooleanOperations {
 		if (o1 == null || o2 == null) {
 			return false;
 		}
+		int k1 = NumberOperations.kind(o1);
+		int k2 = NumberOperations.kind(o2);
+		if (k1 == NumberOperations.LONG && k2 == NumberOperations.LONG) {
+			return ((Number)o1).longValue() == ((Number)o2).longValue();
+		}
+		if (k1 != NumberOperations.OTHER && k2 != NumberOperations.OTHER) { // same as Double.equals()
+			return Double.doubleToLongBits(((Number)o1).doubleValue()) == Double.doubleToLongBits(((Number)o2).doubleValue());
+		}
 		Class<?> t1 = o1.getClass();
 		Class<?> t2 = o2.getClass();
 		if (BigDecimal.class.isAssignableFrom(t1) || BigDecimal.class.isAssignableFrom(t2)) {
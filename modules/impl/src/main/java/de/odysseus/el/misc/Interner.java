@@ -0,0 +1,58 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.misc;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Weak interner. Maps values to a canonical instance, which is shared by all equal values.
+ * Canonical instances are weakly referenced and disappear when no longer used elsewhere.
+ *
+ * @author Christoph Beck
+ */
+public final class Interner<T> {
+	private final Map<T, WeakReference<T>> values = new WeakHashMap<T, WeakReference<T>>();
+
+	/**
+	 * Answer the canonical instance of the given value. If there is none, the given value
+	 * becomes the canonical instance.
+	 * @param value the value (may be <code>null</code>)
+	 * @return canonical instance equal to <code>value</code>
+	 */
+	public synchronized T intern(T value) {
+		if (value == null) {
+			return null;
+		}
+		WeakReference<T> reference = values.get(value);
+		if (reference != null) {
+			T canonical = reference.get();
+			if (canonical != null) {
+				return canonical;
+			}
+		}
+		values.put(value, new WeakReference<T>(value));
+		return value;
+	}
+
+	/**
+	 * @return number of canonical instances
+	 */
+	public synchronized int size() {
+		return values.size();
+	}
+}
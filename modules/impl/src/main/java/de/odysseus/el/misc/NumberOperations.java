@@ -23,11 +23,66 @@ import javax.el.ELException;
 /**
  * Arithmetic Operations as specified in chapter 1.7.
  * 
+ * Operands of type <code>Long</code>, <code>Integer</code>, <code>Short</code>, <code>Byte</code>,
+ * <code>Double</code> and <code>Float</code> are handled without consulting the type converter,
+ * as their coercions to <code>Long</code> and <code>Double</code> are fixed by the specification.
+ * 
  * @author Christoph Beck
  */
 public class NumberOperations {
 	private final static Long LONG_ZERO = Long.valueOf(0L);
 
+	/*
+	 * Boxed longs in [-LONG_CACHE_LOW, LONG_CACHE_HIGH). Wider than the cache used by
+	 * Long.valueOf(long), so that typical loop counters and indices do not allocate.
+	 */
+	private final static int LONG_CACHE_LOW = 1024;
+	private final static int LONG_CACHE_HIGH = 1024;
+	private final static Long[] LONG_CACHE = new Long[LONG_CACHE_LOW + LONG_CACHE_HIGH];
+
+	static {
+		for (int i = 0; i < LONG_CACHE.length; i++) {
+			LONG_CACHE[i] = Long.valueOf(i - LONG_CACHE_LOW);
+		}
+	}
+
+	/*
+	 * Operand kinds for fast paths.
+	 */
+	static final int OTHER = 0;
+	static final int LONG = 1;
+	static final int DOUBLE = 2;
+
+	/**
+	 * Answer the fast path kind of the given operand.
+	 * @return {@link #LONG} for <code>Long</code>, <code>Integer</code>, <code>Short</code> and
+	 * <code>Byte</code>, {@link #DOUBLE} for <code>Double</code> and <code>Float</code>,
+	 * {@link #OTHER} for anything else (including <code>null</code>)
+	 */
+	static final int kind(Object value) {
+		if (value == null) {
+			return OTHER;
+		}
+		Class<?> type = value.getClass();
+		if (type == Long.class || type == Integer.class || type == Short.class || type == Byte.class) {
+			return LONG;
+		}
+		if (type == Double.class || type == Float.class) {
+			return DOUBLE;
+		}
+		return OTHER;
+	}
+
+	/**
+	 * Box a long value, using a cache for values around zero.
+	 */
+	public static final Long valueOf(long value) {
+		if (value >= -LONG_CACHE_LOW && value < LONG_CACHE_HIGH) {
+			return LONG_CACHE[(int)value + LONG_CACHE_LOW];
+		}
+		return Long.valueOf(value);
+	}
+
 	private final static boolean isDotEe(String value) {
 		int length = value.length();
 		for (int i = 0; i < length; i++) {
@@ -61,6 +116,14 @@ public class NumberOperations {
 	}
 
 	public static final Number add(TypeConverter converter, Object o1, Object o2) {
+		int k1 = kind(o1);
+		int k2 = kind(o2);
+		if (k1 == LONG && k2 == LONG) {
+			return valueOf(((Number)o1).longValue() + ((Number)o2).longValue());
+		}
+		if (k1 != OTHER && k2 != OTHER) {
+			return Double.valueOf(((Number)o1).doubleValue() + ((Number)o2).doubleValue());
+		}
 		if (o1 == null && o2 == null) {
 			return LONG_ZERO;
 		}
@@ -76,10 +139,18 @@ public class NumberOperations {
 		if (o1 instanceof BigInteger || o2 instanceof BigInteger) {
 			return converter.convert(o1, BigInteger.class).add(converter.convert(o2, BigInteger.class));
 		}
-		return converter.convert(o1, Long.class) + converter.convert(o2, Long.class);
+		return valueOf(converter.convert(o1, Long.class) + converter.convert(o2, Long.class));
 	}
 
 	public static final Number sub(TypeConverter converter, Object o1, Object o2) {
+		int k1 = kind(o1);
+		int k2 = kind(o2);
+		if (k1 == LONG && k2 == LONG) {
+			return valueOf(((Number)o1).longValue() - ((Number)o2).longValue());
+		}
+		if (k1 != OTHER && k2 != OTHER) {
+			return Double.valueOf(((Number)o1).doubleValue() - ((Number)o2).doubleValue());
+		}
 		if (o1 == null && o2 == null) {
 			return LONG_ZERO;
 		}
@@ -95,10 +166,18 @@ public class NumberOperations {
 		if (o1 instanceof BigInteger || o2 instanceof BigInteger) {
 			return converter.convert(o1, BigInteger.class).subtract(converter.convert(o2, BigInteger.class));
 		}
-		return converter.convert(o1, Long.class) - converter.convert(o2, Long.class);
+		return valueOf(converter.convert(o1, Long.class) - converter.convert(o2, Long.class));
 	}
 
 	public static final Number mul(TypeConverter converter, Object o1, Object o2) {
+		int k1 = kind(o1);
+		int k2 = kind(o2);
+		if (k1 == LONG && k2 == LONG) {
+			return valueOf(((Number)o1).longValue() * ((Number)o2).longValue());
+		}
+		if (k1 != OTHER && k2 != OTHER) {
+			return Double.valueOf(((Number)o1).doubleValue() * ((Number)o2).doubleValue());
+		}
 		if (o1 == null && o2 == null) {
 			return LONG_ZERO;
 		}
@@ -114,10 +193,13 @@ public class NumberOperations {
 		if (o1 instanceof BigInteger || o2 instanceof BigInteger) {
 			return converter.convert(o1, BigInteger.class).multiply(converter.convert(o2, BigInteger.class));
 		}
-		return converter.convert(o1, Long.class) * converter.convert(o2, Long.class);
+		return valueOf(converter.convert(o1, Long.class) * converter.convert(o2, Long.class));
 	}
 
 	public static final Number div(TypeConverter converter, Object o1, Object o2) {
+		if (kind(o1) != OTHER && kind(o2) != OTHER) {
+			return Double.valueOf(((Number)o1).doubleValue() / ((Number)o2).doubleValue());
+		}
 		if (o1 == null && o2 == null) {
 			return LONG_ZERO;
 		}
@@ -128,6 +210,14 @@ public class NumberOperations {
 	}
 
 	public static final Number mod(TypeConverter converter, Object o1, Object o2) {
+		int k1 = kind(o1);
+		int k2 = kind(o2);
+		if (k1 == LONG && k2 == LONG) {
+			return valueOf(((Number)o1).longValue() % ((Number)o2).longValue());
+		}
+		if (k1 != OTHER && k2 != OTHER) {
+			return Double.valueOf(((Number)o1).doubleValue() % ((Number)o2).doubleValue());
+		}
 		if (o1 == null && o2 == null) {
 			return LONG_ZERO;
 		}
@@ -137,7 +227,7 @@ public class NumberOperations {
 		if (o1 instanceof BigInteger || o2 instanceof BigInteger) {
 			return converter.convert(o1, BigInteger.class).remainder(converter.convert(o2, BigInteger.class));
 		}
-		return converter.convert(o1, Long.class) % converter.convert(o2, Long.class);
+		return valueOf(converter.convert(o1, Long.class) % converter.convert(o2, Long.class));
 	}
 
 	public static final Number neg(TypeConverter converter, Object value) {
@@ -160,10 +250,10 @@ public class NumberOperations {
 			if (isDotEe((String)value)) {
 				return Double.valueOf(-converter.convert(value, Double.class).doubleValue());
 			}
-			return Long.valueOf(-converter.convert(value, Long.class).longValue());
+			return valueOf(-converter.convert(value, Long.class).longValue());
 		}
 		if (value instanceof Long) {
-			return Long.valueOf(-((Long)value).longValue());
+			return valueOf(-((Long)value).longValue());
 		}
 		if (value instanceof Integer) {
 			return Integer.valueOf(-((Integer)value).intValue());
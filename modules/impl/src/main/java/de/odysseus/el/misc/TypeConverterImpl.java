@@ -17,8 +17,19 @@ package de.odysseus.el.misc;
 
 import java.beans.PropertyEditor;
 import java.beans.PropertyEditorManager;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.el.ELException;
 
@@ -28,6 +39,65 @@ import javax.el.ELException;
 public class TypeConverterImpl implements TypeConverter {
 	private static final long serialVersionUID = 1L;
 
+	private static final int OTHER = 0;
+	private static final int STRING = 1;
+	private static final int LONG = 2;
+	private static final int DOUBLE = 3;
+	private static final int BOOLEAN = 4;
+	private static final int INTEGER = 5;
+	private static final int FLOAT = 6;
+	private static final int SHORT = 7;
+	private static final int BYTE = 8;
+	private static final int CHARACTER = 9;
+	private static final int BIG_DECIMAL = 10;
+	private static final int BIG_INTEGER = 11;
+
+	/*
+	 * Target types with standard coercion rules, mapped to their dispatch codes.
+	 */
+	private static final Map<Class<?>, Integer> TYPE_CODES = new HashMap<Class<?>, Integer>();
+	static {
+		TYPE_CODES.put(String.class, STRING);
+		TYPE_CODES.put(Long.class, LONG);
+		TYPE_CODES.put(long.class, LONG);
+		TYPE_CODES.put(Double.class, DOUBLE);
+		TYPE_CODES.put(double.class, DOUBLE);
+		TYPE_CODES.put(Boolean.class, BOOLEAN);
+		TYPE_CODES.put(boolean.class, BOOLEAN);
+		TYPE_CODES.put(Integer.class, INTEGER);
+		TYPE_CODES.put(int.class, INTEGER);
+		TYPE_CODES.put(Float.class, FLOAT);
+		TYPE_CODES.put(float.class, FLOAT);
+		TYPE_CODES.put(Short.class, SHORT);
+		TYPE_CODES.put(short.class, SHORT);
+		TYPE_CODES.put(Byte.class, BYTE);
+		TYPE_CODES.put(byte.class, BYTE);
+		TYPE_CODES.put(Character.class, CHARACTER);
+		TYPE_CODES.put(char.class, CHARACTER);
+		TYPE_CODES.put(BigDecimal.class, BIG_DECIMAL);
+		TYPE_CODES.put(BigInteger.class, BIG_INTEGER);
+	}
+
+	private Map<Class<?>, TypeConverter> converters; // not final, see readObject()
+
+	/**
+	 * Create a converter using the standard coercion rules.
+	 */
+	public TypeConverterImpl() {
+		this.converters = Collections.emptyMap();
+	}
+
+	/**
+	 * Create a converter with custom conversions. Conversions to a target type in the given map
+	 * are delegated to the mapped converter, taking precedence over the standard coercion rules.
+	 * @param converters converters by target type (copied)
+	 */
+	public TypeConverterImpl(Map<Class<?>, ? extends TypeConverter> converters) {
+		this.converters = converters.isEmpty()
+			? Collections.<Class<?>, TypeConverter>emptyMap()
+			: Collections.unmodifiableMap(new HashMap<Class<?>, TypeConverter>(converters));
+	}
+
 	protected Boolean coerceToBoolean(Object value) {
 		if (value == null || "".equals(value)) {
 			return Boolean.FALSE;
@@ -278,65 +348,240 @@ public class TypeConverterImpl implements TypeConverter {
 		throw new ELException(LocalMessages.get("error.coerce.type", value, value.getClass(), type));
 	}
 
-	protected Object coerceStringToType(String value, Class<?> type) {
-		PropertyEditor editor = PropertyEditorManager.findEditor(type);
-		if (editor == null) {
-			if ("".equals(value)) {
-				return null;
+	/*
+	 * Parse function for string to type coercions. Parsers are thread-safe.
+	 */
+	private static abstract class Parser {
+		/**
+		 * @throws IllegalArgumentException if the value cannot be parsed
+		 */
+		abstract Object parse(String value);
+
+		/**
+		 * @return <code>true</code> if empty strings are passed to {@link #parse(String)}
+		 */
+		boolean parsesEmpty() {
+			return false;
+		}
+	}
+
+	/*
+	 * Negative cache entry: type cannot be parsed.
+	 */
+	private static final Parser NO_PARSER = new Parser() {
+		@Override
+		Object parse(String value) {
+			throw new IllegalArgumentException();
+		}
+	};
+
+	/*
+	 * Property editors are not thread-safe, so we create a new editor for each value. If the
+	 * editor cannot be instantiated directly, each thread uses its own editor.
+	 */
+	private static final class EditorParser extends Parser {
+		private final Class<?> type;
+		private final Constructor<? extends PropertyEditor> constructor; // null: one editor per thread
+		private final ThreadLocal<PropertyEditor> editors = new ThreadLocal<PropertyEditor>() {
+			@Override
+			protected PropertyEditor initialValue() {
+				return PropertyEditorManager.findEditor(type);
 			}
-			throw new ELException(LocalMessages.get("error.coerce.type", value, String.class, type));
-		} else {
-			if ("".equals(value)) {
+		};
+
+		EditorParser(Class<?> type, Constructor<? extends PropertyEditor> constructor) {
+			this.type = type;
+			this.constructor = constructor;
+		}
+
+		@Override
+		Object parse(String value) {
+			PropertyEditor editor = null;
+			if (constructor != null) {
 				try {
-					editor.setAsText(value);
-				} catch (IllegalArgumentException e) {
-					return null;
+					editor = constructor.newInstance();
+				} catch (Exception e) {
+					// fall through...
 				}
-			} else {
-				try {
-					editor.setAsText(value);
-				} catch (IllegalArgumentException e) {
-					throw new ELException(LocalMessages.get("error.coerce.value", value, value.getClass(), type));
+			}
+			if (editor == null) {
+				editor = editors.get();
+				if (editor == null) {
+					throw new IllegalArgumentException("No property editor for " + type);
 				}
 			}
+			editor.setAsText(value);
 			return editor.getValue();
 		}
+
+		@Override
+		boolean parsesEmpty() {
+			return true;
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	protected Object coerceToType(Object value, Class<?> type) {
-		if (type == String.class) {
-			return coerceToString(value);
+	/*
+	 * Parse by invoking a static <code>valueOf(String)</code> method. This is an extension to the
+	 * coercion rules of the specification, which only cover property editors.
+	 */
+	private static final class ValueOfParser extends Parser {
+		private final Method method;
+
+		ValueOfParser(Method method) {
+			this.method = method;
 		}
-		if (type == Long.class || type == long.class) {
-			return coerceToLong(value);
+
+		@Override
+		Object parse(String value) {
+			try {
+				return method.invoke(null, value);
+			} catch (InvocationTargetException e) {
+				throw new IllegalArgumentException(e.getCause());
+			} catch (Exception e) {
+				throw new IllegalArgumentException(e);
+			}
 		}
-		if (type == Double.class || type == double.class) {
-			return coerceToDouble(value);
+	}
+
+	/*
+	 * Cached parser. Since the default converter is shared by all applications, the type is
+	 * weakly referenced and the parser (which references its type) is softly referenced, so that
+	 * the cache does not prevent class loaders from being unloaded.
+	 */
+	private static final class ParserEntry {
+		private final WeakReference<Class<?>> type;
+		private final SoftReference<Parser> parser;
+
+		ParserEntry(Class<?> type, Parser parser) {
+			this.type = new WeakReference<Class<?>>(type);
+			this.parser = new SoftReference<Parser>(parser);
 		}
-		if (type == Boolean.class || type == boolean.class) {
-			return coerceToBoolean(value);
+
+		Parser get(Class<?> type) {
+			return this.type.get() == type ? parser.get() : null;
 		}
-		if (type == Integer.class || type == int.class) {
-			return coerceToInteger(value);
+
+		boolean isCleared() {
+			return type.get() == null || parser.get() == null;
 		}
-		if (type == Float.class || type == float.class) {
-			return coerceToFloat(value);
+	}
+
+	/*
+	 * Parsers by type name. The map is never modified after publication, but replaced on write,
+	 * so that lookups do not lock. Types of equal names from different class loaders share one
+	 * slot, replacing each other's parser.
+	 */
+	private transient volatile Map<String, ParserEntry> parsers;
+
+	/**
+	 * Derive a parse function for the given type. Property editors take precedence over a static
+	 * <code>valueOf(String)</code> method.
+	 * @return parser or <code>NO_PARSER</code>
+	 */
+	private static Parser createParser(Class<?> type) {
+		PropertyEditor editor = PropertyEditorManager.findEditor(type);
+		if (editor != null) {
+			Constructor<? extends PropertyEditor> constructor = null;
+			try {
+				constructor = editor.getClass().getConstructor();
+			} catch (Exception e) {
+				// find editor for each value...
+			}
+			return new EditorParser(type, constructor);
 		}
-		if (type == Short.class || type == short.class) {
-			return coerceToShort(value);
+		if (!Modifier.isPublic(type.getModifiers())) {
+			return NO_PARSER;
 		}
-		if (type == Byte.class || type == byte.class) {
-			return coerceToByte(value);
+		try {
+			Method method = type.getMethod("valueOf", String.class);
+			if (Modifier.isStatic(method.getModifiers()) && type.isAssignableFrom(method.getReturnType())) {
+				return new ValueOfParser(method);
+			}
+		} catch (NoSuchMethodException e) {
+			// no parser...
 		}
-		if (type == Character.class || type == char.class) {
-			return coerceToCharacter(value);
+		return NO_PARSER;
+	}
+
+	private Parser getParser(Class<?> type) {
+		Map<String, ParserEntry> parsers = this.parsers;
+		ParserEntry entry = parsers == null ? null : parsers.get(type.getName());
+		Parser parser = entry == null ? null : entry.get(type);
+		if (parser == null) {
+			parser = createParser(type);
+			synchronized (this) {
+				Map<String, ParserEntry> copy = new HashMap<String, ParserEntry>();
+				if (this.parsers != null) {
+					for (Map.Entry<String, ParserEntry> e : this.parsers.entrySet()) {
+						if (!e.getValue().isCleared()) {
+							copy.put(e.getKey(), e.getValue());
+						}
+					}
+				}
+				copy.put(type.getName(), new ParserEntry(type, parser));
+				this.parsers = copy;
+			}
 		}
-		if (type == BigDecimal.class) {
-			return coerceToBigDecimal(value);
+		return parser;
+	}
+
+	/**
+	 * Coerce a string to the given type. This implementation uses the type's property editor. If
+	 * there is no property editor for the type, a public static <code>valueOf(String)</code>
+	 * method returning the type is used. This is an intentional extension to the specification,
+	 * which only covers property editors. The parse function derived for a type is cached, so
+	 * property editors should be registered before the first coercion to their type.
+	 */
+	protected Object coerceStringToType(String value, Class<?> type) {
+		Parser parser = getParser(type);
+		if ("".equals(value) && !parser.parsesEmpty()) {
+			return null;
 		}
-		if (type == BigInteger.class) {
-			return coerceToBigInteger(value);
+		if (parser == NO_PARSER) {
+			throw new ELException(LocalMessages.get("error.coerce.type", value, String.class, type));
+		}
+		try {
+			return parser.parse(value);
+		} catch (IllegalArgumentException e) {
+			if ("".equals(value)) {
+				return null;
+			}
+			throw new ELException(LocalMessages.get("error.coerce.value", value, value.getClass(), type));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	protected Object coerceToType(Object value, Class<?> type) {
+		if (!converters.isEmpty()) {
+			TypeConverter converter = converters.get(type);
+			if (converter != null) {
+				return converter.convert(value, type);
+			}
+		}
+		Integer code = TYPE_CODES.get(type);
+		switch (code == null ? OTHER : code.intValue()) {
+			case STRING:
+				return coerceToString(value);
+			case LONG:
+				return coerceToLong(value);
+			case DOUBLE:
+				return coerceToDouble(value);
+			case BOOLEAN:
+				return coerceToBoolean(value);
+			case INTEGER:
+				return coerceToInteger(value);
+			case FLOAT:
+				return coerceToFloat(value);
+			case SHORT:
+				return coerceToShort(value);
+			case BYTE:
+				return coerceToByte(value);
+			case CHARACTER:
+				return coerceToCharacter(value);
+			case BIG_DECIMAL:
+				return coerceToBigDecimal(value);
+			case BIG_INTEGER:
+				return coerceToBigInteger(value);
 		}
 		if (type.getSuperclass() == Enum.class) {
 			return coerceToEnum(value, (Class<? extends Enum>)type);
@@ -349,10 +594,26 @@ public class TypeConverterImpl implements TypeConverter {
 		}
 		throw new ELException(LocalMessages.get("error.coerce.type", value, value.getClass(), type));
 	}
-	
+
+
 	@Override
 	public boolean equals(Object obj) {
-		return obj != null && obj.getClass().equals(getClass());
+		return obj != null && obj.getClass().equals(getClass())
+			&& getConverters().equals(((TypeConverterImpl)obj).getConverters());
+	}
+
+	private Map<Class<?>, TypeConverter> getConverters() {
+		return converters == null ? Collections.<Class<?>, TypeConverter>emptyMap() : converters;
+	}
+
+	/*
+	 * Converters written by previous versions have no custom conversions.
+	 */
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (converters == null) {
+			converters = Collections.emptyMap();
+		}
 	}
 
 	@Override
@@ -16,7 +16,10 @@
 package de.odysseus.el.tree;
 
 import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.lang.reflect.Method;
@@ -137,6 +140,22 @@ public class Bindings implements TypeConverter {
 	public <T> T convert(Object value, Class<T> type) {
 		return converter.convert(value, type);
 	}
+
+	/**
+	 * @return <code>true</code> if these bindings use the default converter (which passes
+	 * strings through unchanged when converting them to <code>String</code>)
+	 */
+	public boolean isDefaultConverter() {
+		return converter == TypeConverter.DEFAULT;
+	}
+
+	/**
+	 * @return <code>true</code> if these bindings use the given converter
+	 * (<code>null</code> means the default converter)
+	 */
+	boolean isConverter(TypeConverter converter) {
+		return this.converter == (converter == null ? TypeConverter.DEFAULT : converter);
+	}
 	
 	@Override
 	public boolean equals(Object obj) {
@@ -154,6 +173,59 @@ public class Bindings implements TypeConverter {
 		return Arrays.hashCode(functions) ^ Arrays.hashCode(variables) ^ converter.hashCode();
 	}
 
+	/**
+	 * Write these bindings in compact form: functions as declaring class, name and parameter
+	 * types, variables as objects, the converter only if it is not the default converter.
+	 * Classes are written as objects, so that the stream shares repeated classes.
+	 * @see #read(ObjectInput)
+	 */
+	public void write(ObjectOutput out) throws IOException {
+		out.writeInt(functions.length);
+		for (Method function : functions) {
+			out.writeObject(function.getDeclaringClass());
+			out.writeUTF(function.getName());
+			Class<?>[] types = function.getParameterTypes();
+			out.writeInt(types.length);
+			for (Class<?> type : types) {
+				out.writeObject(type);
+			}
+		}
+		out.writeInt(variables.length);
+		for (ValueExpression variable : variables) {
+			out.writeObject(variable);
+		}
+		out.writeBoolean(converter != TypeConverter.DEFAULT);
+		if (converter != TypeConverter.DEFAULT) {
+			out.writeObject(converter);
+		}
+	}
+
+	/**
+	 * Read bindings written by {@link #write(ObjectOutput)}.
+	 */
+	public static Bindings read(ObjectInput in) throws IOException, ClassNotFoundException {
+		Method[] functions = new Method[in.readInt()];
+		for (int i = 0; i < functions.length; i++) {
+			Class<?> type = (Class<?>)in.readObject();
+			String name = in.readUTF();
+			Class<?>[] args = new Class<?>[in.readInt()];
+			for (int j = 0; j < args.length; j++) {
+				args[j] = (Class<?>)in.readObject();
+			}
+			try {
+				functions[i] = type.getDeclaredMethod(name, args);
+			} catch (NoSuchMethodException e) {
+				throw new InvalidObjectException(e.getMessage());
+			}
+		}
+		ValueExpression[] variables = new ValueExpression[in.readInt()];
+		for (int i = 0; i < variables.length; i++) {
+			variables[i] = (ValueExpression)in.readObject();
+		}
+		TypeConverter converter = in.readBoolean() ? (TypeConverter)in.readObject() : TypeConverter.DEFAULT;
+		return new Bindings(functions, variables, converter);
+	}
+
 	private void writeObject(ObjectOutputStream out) throws IOException, ClassNotFoundException {
 		out.defaultWriteObject();
 		MethodWrapper[] wrappers = new MethodWrapper[functions.length];
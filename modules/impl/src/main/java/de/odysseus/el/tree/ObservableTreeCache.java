@@ -0,0 +1,44 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package de.odysseus.el.tree;
+
+/**
+ * Tree cache which reports its size and evictions.
+ * If a {@link TreeStore} is backed by an observable cache, the store's listener will be
+ * notified about evictions.
+ *
+ * @author Christoph Beck
+ */
+public interface ObservableTreeCache extends TreeCache {
+	/**
+	 * @return current number of cached trees
+	 */
+	public int size();
+
+	/**
+	 * Lookup a tree without recording the access (e.g. in hit/miss statistics or eviction
+	 * order).
+	 * @param expression expression string
+	 * @return cached tree or <code>null</code>
+	 */
+	public Tree peek(String expression);
+
+	/**
+	 * Set listener to be notified about evictions.
+	 * @param listener eviction listener (may be <code>null</code>)
+	 */
+	public void setListener(TreeStoreListener listener);
+}
@@ -34,6 +34,11 @@ import de.odysseus.el.misc.TypeConverter;
  * because it would make the tree depend on the function/variable mapper supplied at
  * parse time.
  * 
+ * The tree remembers the bindings created last if they do not refer to any variables. If a
+ * later bind resolves the same functions and converter, these bindings are shared rather than
+ * creating new ones. Bindings referring to variables are never remembered, since this would
+ * keep the variables (and whatever they refer to) reachable from a cached tree.
+ * 
  * @author Christoph Beck
  */
 public class Tree {
@@ -41,6 +46,10 @@ public class Tree {
 	private final List<FunctionNode> functions;
 	private final List<IdentifierNode> identifiers;
 	private final boolean deferred;
+	private final String[] prefixes;
+	private final String[] localNames;
+
+	private volatile Bindings bindings;
 
 	/**
 	 * 
@@ -55,6 +64,14 @@ public class Tree {
 		this.functions = functions;
 		this.identifiers = identifiers;
 		this.deferred = deferred;
+		this.prefixes = new String[functions.size()];
+		this.localNames = new String[functions.size()];
+		for (int i = 0; i < functions.size(); i++) {
+			String image = functions.get(i).getName();
+			int colon = image.indexOf(':');
+			prefixes[i] = colon < 0 ? "" : image.substring(0, colon);
+			localNames[i] = colon < 0 ? image : image.substring(colon + 1);
+		}
 	}
 
 	/**
@@ -114,13 +131,7 @@ public class Tree {
 			for (int i = 0; i < functions.size(); i++) {
 				FunctionNode node = functions.get(i);
 				String image = node.getName();
-				Method method = null;
-				int colon = image.indexOf(':');
-				if (colon < 0) {
-					method = fnMapper.resolveFunction("", image);
-				} else {
-					method = fnMapper.resolveFunction(image.substring(0, colon), image.substring(colon + 1));
-				}
+				Method method = fnMapper.resolveFunction(prefixes[i], localNames[i]);
 				if (method == null) {
 					throw new ELException(LocalMessages.get("error.function.notfound", image));
 				}
@@ -137,6 +148,7 @@ public class Tree {
 			}
 		}
 		ValueExpression[] expressions = null;
+		boolean variables = false;
 		if (identifiers.size() > 0) {
 			expressions = new ValueExpression[identifiers.size()];
 			for (int i = 0; i < identifiers.size(); i++) {
@@ -146,8 +158,33 @@ public class Tree {
 					expression = varMapper.resolveVariable(node.getName());
 				}
 				expressions[node.getIndex()] = expression;
+				variables |= expression != null;
+			}
+		}
+		if (variables) {
+			return new Bindings(methods, expressions, converter);
+		}
+		Bindings bindings = this.bindings;
+		if (bindings != null && isBound(bindings, methods, converter)) {
+			return bindings;
+		}
+		return this.bindings = new Bindings(methods, expressions, converter);
+	}
+
+	/**
+	 * Answer <code>true</code> if the given bindings hold the given methods and converter.
+	 */
+	private boolean isBound(Bindings bindings, Method[] methods, TypeConverter converter) {
+		if (!bindings.isConverter(converter)) {
+			return false;
+		}
+		if (methods != null) {
+			for (int i = 0; i < methods.length; i++) {
+				if (methods[i] != bindings.getFunction(i)) {
+					return false;
+				}
 			}
 		}
-		return new Bindings(methods, expressions, converter);
+		return true;
 	}
 }
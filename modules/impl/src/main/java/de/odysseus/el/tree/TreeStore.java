@@ -15,6 +15,25 @@
  */ 
 package de.odysseus.el.tree;
 
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Tree store class.
@@ -22,11 +41,86 @@ package de.odysseus.el.tree;
  * {@link de.odysseus.el.tree.TreeCache}, provided at construction time.
  * The <code>get(String)</code> method is then used to serve expression trees.
  *
+ * Stores may be registered process-wide (see {@link #register(TreeStore)}). Deserialized
+ * expressions get their trees from the store registered for their builder, so restoring
+ * expressions which are already cached takes a lookup instead of parsing.
+ *
  * @author Christoph Beck
  */
 public class TreeStore {
+	/**
+	 * Result of loading expressions (see {@link TreeStore#load(Collection, Executor)}).
+	 */
+	public static final class LoadResult {
+		private final Map<String, Tree> trees;
+		private final Map<String, TreeBuilderException> errors;
+
+		LoadResult(Map<String, Tree> trees, Map<String, TreeBuilderException> errors) {
+			this.trees = Collections.unmodifiableMap(trees);
+			this.errors = Collections.unmodifiableMap(errors);
+		}
+
+		/**
+		 * @return parsed trees by expression string (in input order)
+		 */
+		public Map<String, Tree> getTrees() {
+			return trees;
+		}
+
+		/**
+		 * @return syntax errors by expression string (in input order, empty if all expressions
+		 * could be parsed)
+		 */
+		public Map<String, TreeBuilderException> getErrors() {
+			return errors;
+		}
+	}
+
+	private static final Map<TreeBuilder, WeakReference<TreeStore>> registry = new WeakHashMap<TreeBuilder, WeakReference<TreeStore>>();
+
+	/**
+	 * Register the given store for its builder, replacing a store previously registered for an
+	 * equal builder. Stores are weakly referenced and disappear from the registry when they are
+	 * no longer used elsewhere. The registry is shared by the whole virtual machine.
+	 * @param store the store
+	 */
+	public static void register(TreeStore store) {
+		synchronized (registry) {
+			registry.remove(store.getBuilder()); // make sure the new builder becomes the key
+			registry.put(store.getBuilder(), new WeakReference<TreeStore>(store));
+		}
+	}
+
+	/**
+	 * Unregister the given store (does nothing if a different store is registered for its
+	 * builder).
+	 * @param store the store
+	 */
+	public static void unregister(TreeStore store) {
+		synchronized (registry) {
+			if (lookup(store.getBuilder()) == store) {
+				registry.remove(store.getBuilder());
+			}
+		}
+	}
+
+	/**
+	 * Answer the store registered for the given builder.
+	 * @param builder the builder
+	 * @return store registered for a builder equal to the given builder or <code>null</code>
+	 */
+	public static TreeStore lookup(TreeBuilder builder) {
+		synchronized (registry) {
+			WeakReference<TreeStore> reference = registry.get(builder);
+			return reference == null ? null : reference.get();
+		}
+	}
+
 	private final TreeCache cache;
 	private final TreeBuilder builder;
+	private final ConcurrentMap<String, FutureTask<Tree>> pending = new ConcurrentHashMap<String, FutureTask<Tree>>();
+	private volatile TreeStoreListener listener;
+	private volatile Map<String, Tree> preloaded = Collections.emptyMap();
 
 	/**
 	 * Constructor.
@@ -43,23 +137,273 @@ public class TreeStore {
 	public TreeBuilder getBuilder() {
 		return builder;
 	}
+
+	/**
+	 * @return the tree cache (may be <code>null</code>)
+	 */
+	public TreeCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * @return the current listener (may be <code>null</code>)
+	 */
+	public TreeStoreListener getListener() {
+		return listener;
+	}
+
+	/**
+	 * Set a listener to be notified about cache hits, misses, tree builds and evictions.
+	 * Evictions are reported only if the cache is an {@link ObservableTreeCache}.
+	 * @param listener the listener (may be <code>null</code> to disable notifications)
+	 */
+	public void setListener(TreeStoreListener listener) {
+		this.listener = listener;
+		if (cache instanceof ObservableTreeCache) {
+			((ObservableTreeCache)cache).setListener(listener);
+		}
+	}
+
+	/**
+	 * @return number of cached trees or <code>-1</code> if unknown (no cache or cache is not an
+	 * {@link ObservableTreeCache})
+	 */
+	public int getCacheSize() {
+		return cache instanceof ObservableTreeCache ? ((ObservableTreeCache)cache).size() : -1;
+	}
+
+	/**
+	 * Preload trees, e.g. from a tree bundle created by a precompiler. Preloaded trees are
+	 * served before consulting the cache and are never evicted. Replaces previously preloaded
+	 * trees.
+	 * @param trees trees by expression string (must not be modified afterwards)
+	 */
+	public void preload(Map<String, Tree> trees) {
+		this.preloaded = trees == null ? Collections.<String, Tree>emptyMap() : trees;
+	}
+
+	/**
+	 * @return number of preloaded trees
+	 */
+	public int getPreloadedSize() {
+		return preloaded.size();
+	}
+
+	/**
+	 * Parse the given expressions in parallel, using one thread per available processor, and
+	 * put the trees into the cache.
+	 * @see #load(Collection, Executor)
+	 */
+	public LoadResult load(Collection<String> expressions) throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "juel-tree-loader");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		try {
+			return load(expressions, executor);
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Parse the given expressions using the given executor and put the trees into the cache
+	 * (e.g. to warm up the cache at startup). Each expression is parsed as if requested by
+	 * {@link #get(String)}, so expressions which are cached or currently being parsed are
+	 * not parsed again. Tasks rejected by the executor are run in the calling thread.
+	 * This method returns when all expressions have been processed. The result holds the
+	 * trees, so they can be used even if the cache is smaller than the number of expressions.
+	 * @param expressions expression strings
+	 * @param executor executor used to run the parse tasks (<code>null</code> to parse in the
+	 * calling thread)
+	 * @return trees and syntax errors by expression string
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the
+	 * parse tasks to complete
+	 */
+	public LoadResult load(Collection<String> expressions, Executor executor) throws InterruptedException {
+		Set<String> distinct = new LinkedHashSet<String>(expressions);
+		final ConcurrentMap<String, Tree> trees = new ConcurrentHashMap<String, Tree>();
+		final ConcurrentMap<String, TreeBuilderException> errors = new ConcurrentHashMap<String, TreeBuilderException>();
+		final ConcurrentMap<String, RuntimeException> failures = new ConcurrentHashMap<String, RuntimeException>();
+		final CountDownLatch done = new CountDownLatch(distinct.size());
+		for (final String expression : distinct) {
+			Runnable task = new Runnable() {
+				public void run() {
+					try {
+						trees.put(expression, get(expression));
+					} catch (TreeBuilderException e) {
+						errors.put(expression, e);
+					} catch (RuntimeException e) {
+						failures.put(expression, e);
+					} finally {
+						done.countDown();
+					}
+				}
+			};
+			if (executor == null) {
+				task.run();
+			} else {
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					task.run();
+				}
+			}
+		}
+		done.await();
+		if (!failures.isEmpty()) {
+			throw failures.values().iterator().next();
+		}
+		Map<String, Tree> treeResult = new LinkedHashMap<String, Tree>();
+		Map<String, TreeBuilderException> errorResult = new LinkedHashMap<String, TreeBuilderException>();
+		for (String expression : distinct) {
+			if (trees.containsKey(expression)) {
+				treeResult.put(expression, trees.get(expression));
+			} else {
+				errorResult.put(expression, errors.get(expression));
+			}
+		}
+		return new LoadResult(treeResult, errorResult);
+	}
 	
 	/**
 	 * Get a {@link Tree}.
+	 * Preloaded trees are served first (see {@link #preload(Map)}).
 	 * If a tree for the given expression is present in the cache, it is
 	 * taken from there; otherwise, the expression string is parsed and
-	 * the resulting tree is added to the cache.
+	 * the resulting tree is added to the cache. Concurrent requests for
+	 * an expression which is currently being parsed wait for that parse
+	 * and share its result (or exception).
 	 * @param expression expression string
 	 * @return expression tree
 	 */
 	public Tree get(String expression) throws TreeBuilderException {
+		TreeStoreListener listener = this.listener;
+		Map<String, Tree> preloaded = this.preloaded;
+		if (!preloaded.isEmpty()) {
+			Tree tree = preloaded.get(expression);
+			if (tree != null) {
+				if (listener != null) {
+					listener.hit(expression);
+				}
+				return tree;
+			}
+		}
 		if (cache == null) {
-			return builder.build(expression);
+			if (listener == null) {
+				return builder.build(expression);
+			}
+			listener.miss(expression);
+			return build(expression, listener);
 		}
 		Tree tree = cache.get(expression);
 		if (tree == null) {
-			cache.put(expression, tree = builder.build(expression));
+			if (listener != null) {
+				listener.miss(expression);
+			}
+			tree = buildShared(expression, listener);
+		} else if (listener != null) {
+			listener.hit(expression);
 		}
 		return tree;
 	}
+
+	/**
+	 * Answer the preloaded or cached tree for the given expression without building it. A tree
+	 * found is reported as a hit to the listener; a missing tree is not reported.
+	 * @param expression expression string
+	 * @return expression tree or <code>null</code>
+	 */
+	public Tree getIfPresent(String expression) {
+		Tree tree = preloaded.get(expression);
+		if (tree == null && cache != null) {
+			tree = cache.get(expression);
+		}
+		TreeStoreListener listener = this.listener;
+		if (tree != null && listener != null) {
+			listener.hit(expression);
+		}
+		return tree;
+	}
+
+	/**
+	 * Add a tree obtained elsewhere (e.g. decoded from a serialized expression) to the cache.
+	 * The tree must have been built by a builder equal to this store's builder. Does nothing if
+	 * the store has no cache.
+	 * @param expression expression string
+	 * @param tree expression tree
+	 */
+	public void put(String expression, Tree tree) {
+		if (cache != null) {
+			cache.put(expression, tree);
+		}
+	}
+
+	private Tree build(String expression, TreeStoreListener listener) throws TreeBuilderException {
+		if (listener == null) {
+			return builder.build(expression);
+		}
+		long time = System.nanoTime();
+		Tree tree = builder.build(expression);
+		listener.built(expression, System.nanoTime() - time);
+		return tree;
+	}
+
+	/**
+	 * Build and cache a tree. If another thread is already building the tree for the
+	 * given expression, wait for it.
+	 */
+	private Tree buildShared(final String expression, final TreeStoreListener listener) throws TreeBuilderException {
+		FutureTask<Tree> task = pending.get(expression);
+		if (task == null) {
+			FutureTask<Tree> newTask = new FutureTask<Tree>(new Callable<Tree>() {
+				public Tree call() {
+					// another thread may have finished building after our cache miss
+					Tree tree = cache instanceof ObservableTreeCache
+						? ((ObservableTreeCache)cache).peek(expression)
+						: cache.get(expression);
+					if (tree == null) {
+						tree = build(expression, listener);
+						cache.put(expression, tree);
+					}
+					return tree;
+				}
+			});
+			task = pending.putIfAbsent(expression, newTask);
+			if (task == null) {
+				task = newTask;
+				try {
+					task.run();
+				} finally {
+					pending.remove(expression, task);
+				}
+			}
+		}
+		boolean interrupted = false;
+		try {
+			while (true) {
+				try {
+					return task.get();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new IllegalStateException(cause);
+		} finally {
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
 }
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package de.odysseus.el.tree;
+
+/**
+ * Tree store listener interface.
+ * A listener registered with a {@link TreeStore} is notified about cache hits and misses,
+ * tree builds and evictions. Implementations must be thread-safe and should return quickly,
+ * since they are called on the expression creation path.
+ *
+ * @see TreeStoreStatistics
+ * @author Christoph Beck
+ */
+public interface TreeStoreListener {
+	/**
+	 * A tree has been found in the cache.
+	 */
+	public void hit(String expression);
+
+	/**
+	 * A tree has not been found in the cache (or there is no cache).
+	 */
+	public void miss(String expression);
+
+	/**
+	 * A tree has been built.
+	 * @param nanos build time in nanoseconds
+	 */
+	public void built(String expression, long nanos);
+
+	/**
+	 * A tree has been removed from the cache to make room for others.
+	 */
+	public void evicted(String expression);
+}
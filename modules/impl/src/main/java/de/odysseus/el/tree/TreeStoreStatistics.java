@@ -0,0 +1,129 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package de.odysseus.el.tree;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tree store listener, which counts cache hits, misses and evictions and keeps a histogram
+ * of tree build times. Histogram bucket <code>i</code> counts builds which took between
+ * <code>2^i</code> (inclusive) and <code>2^(i+1)</code> (exclusive) nanoseconds (bucket 0 also
+ * holds zero durations).
+ *
+ * @author Christoph Beck
+ */
+public class TreeStoreStatistics implements TreeStoreListener {
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private final AtomicLong builds = new AtomicLong();
+	private final AtomicLong buildTime = new AtomicLong();
+	private final AtomicLongArray histogram = new AtomicLongArray(64);
+
+	public void hit(String expression) {
+		hits.incrementAndGet();
+	}
+
+	public void miss(String expression) {
+		misses.incrementAndGet();
+	}
+
+	public void built(String expression, long nanos) {
+		builds.incrementAndGet();
+		buildTime.addAndGet(nanos);
+		histogram.incrementAndGet(nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos));
+	}
+
+	public void evicted(String expression) {
+		evictions.incrementAndGet();
+	}
+
+	/**
+	 * @return number of cache hits
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of cache misses
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return ratio of hits to lookups (<code>0</code> if there were no lookups yet)
+	 */
+	public double getHitRatio() {
+		long hits = getHitCount();
+		long total = hits + getMissCount();
+		return total == 0 ? 0 : (double)hits / total;
+	}
+
+	/**
+	 * @return number of cache evictions
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	/**
+	 * @return number of tree builds
+	 */
+	public long getBuildCount() {
+		return builds.get();
+	}
+
+	/**
+	 * @return total build time in nanoseconds
+	 */
+	public long getBuildTime() {
+		return buildTime.get();
+	}
+
+	/**
+	 * @return build time histogram (log2 nanosecond buckets)
+	 */
+	public long[] getBuildTimeHistogram() {
+		long[] result = new long[histogram.length()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = histogram.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Reset all counters.
+	 */
+	public void reset() {
+		hits.set(0);
+		misses.set(0);
+		evictions.set(0);
+		builds.set(0);
+		buildTime.set(0);
+		for (int i = 0; i < histogram.length(); i++) {
+			histogram.set(i, 0);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "hits=" + getHitCount() + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount()
+				+ ", builds=" + getBuildCount() + ", buildTime=" + getBuildTime() + "ns";
+	}
+}
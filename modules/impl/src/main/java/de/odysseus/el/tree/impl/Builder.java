@@ -68,11 +68,25 @@ public class Builder implements TreeBuilder {
 		 * Do not verify that a method's return type matches the expected return type passed to
 		 * {@link ExpressionFactory#createMethodExpression(ELContext, String, Class, Class[])}. 
 		 */
-		IGNORE_RETURN_TYPE
+		IGNORE_RETURN_TYPE,
+		/**
+		 * Compile frequently evaluated expression trees to bytecode (see {@link Compiler}).
+		 * Nodes which cannot be compiled are still evaluated by the interpreter.
+		 */
+		COMPILE,
+		/**
+		 * Fold operators and choices over literals at build time, e.g. <code>${1024 * 1024}</code>
+		 * is parsed to <code>${1048576}</code> (see {@link ConstantFolder}). Note that this affects
+		 * the structural identity of expressions: <code>${1 + 1}</code> equals <code>${2}</code>.
+		 */
+		CONSTANT_FOLDING
 	}
 	
 	protected final EnumSet<Feature> features;
 
+	private transient Compiler compiler;
+	private transient ConstantFolder folder;
+
 	public Builder() {
 		this.features = EnumSet.noneOf(Feature.class);
 	}
@@ -111,9 +125,55 @@ public class Builder implements TreeBuilder {
 		}
 	}
 
+	/**
+	 * Parse expression given as a character sequence (e.g. a <code>StringBuilder</code> or
+	 * <code>CharBuffer</code> holding template content), without copying it into a string first.
+	 * String input is passed to {@link #build(String)}.
+	 */
+	public Tree build(CharSequence expression) throws TreeBuilderException {
+		if (expression instanceof String) {
+			return build((String)expression);
+		}
+		try {
+			return createParser(expression).tree();
+		} catch (ScanException e) {
+			throw new TreeBuilderException(expression.toString(), e.position, e.encountered, e.expected, e.getMessage());
+		} catch (ParseException e) {
+			throw new TreeBuilderException(expression.toString(), e.position, e.encountered, e.expected, e.getMessage());
+		}
+	}
+
 	protected Parser createParser(String expression) {
 		return new Parser(this, expression);
 	}	
+
+	/**
+	 * Create a parser for non-string input. Subclasses providing their own parser should
+	 * override this method as well as {@link #createParser(String)}.
+	 */
+	protected Parser createParser(CharSequence expression) {
+		return new Parser(this, expression);
+	}
+
+	/**
+	 * Get the compiler used if the {@link Feature#COMPILE} feature is enabled.
+	 */
+	protected Compiler getCompiler() {
+		if (compiler == null) {
+			compiler = new Compiler();
+		}
+		return compiler;
+	}
+
+	/**
+	 * Get the constant folder used if the {@link Feature#CONSTANT_FOLDING} feature is enabled.
+	 */
+	protected ConstantFolder getConstantFolder() {
+		if (folder == null) {
+			folder = new ConstantFolder();
+		}
+		return folder;
+	}
 	
 	@Override
 	public boolean equals(Object obj) {
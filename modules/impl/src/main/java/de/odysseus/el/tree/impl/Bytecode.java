@@ -0,0 +1,437 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Minimal class file assembler used by the {@link Compiler}.
+ * Generates version 49 (Java 5) class files, which do not require stack map frames.
+ * Only forward jumps are supported.
+ *
+ * @author Christoph Beck
+ */
+final class Bytecode {
+	static final int ACONST_NULL = 0x01;
+	static final int ICONST_0 = 0x03;
+	static final int BIPUSH = 0x10;
+	static final int SIPUSH = 0x11;
+	static final int LDC = 0x12;
+	static final int LDC_W = 0x13;
+	static final int ALOAD = 0x19;
+	static final int AALOAD = 0x32;
+	static final int ASTORE = 0x3a;
+	static final int POP = 0x57;
+	static final int DUP = 0x59;
+	static final int IXOR = 0x82;
+	static final int IFEQ = 0x99;
+	static final int IFNE = 0x9a;
+	static final int GOTO = 0xa7;
+	static final int ARETURN = 0xb0;
+	static final int RETURN = 0xb1;
+	static final int GETSTATIC = 0xb2;
+	static final int GETFIELD = 0xb4;
+	static final int INVOKEVIRTUAL = 0xb6;
+	static final int INVOKESPECIAL = 0xb7;
+	static final int INVOKESTATIC = 0xb8;
+	static final int NEW = 0xbb;
+	static final int CHECKCAST = 0xc0;
+	static final int IFNULL = 0xc6;
+	static final int IFNONNULL = 0xc7;
+
+	private static final int CONSTANT_UTF8 = 1;
+	private static final int CONSTANT_INTEGER = 3;
+	private static final int CONSTANT_CLASS = 7;
+	private static final int CONSTANT_STRING = 8;
+	private static final int CONSTANT_FIELDREF = 9;
+	private static final int CONSTANT_METHODREF = 10;
+	private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+	/**
+	 * Jump target.
+	 */
+	static final class Label {
+		private int position;
+		private int stack = -1;
+		private final List<Integer> jumps = new ArrayList<Integer>(2);
+	}
+
+	private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+	private final DataOutputStream pool = new DataOutputStream(poolBytes);
+	private final Map<String, Integer> entries = new HashMap<String, Integer>();
+	private int poolCount = 1;
+
+	private final ByteArrayOutputStream methodBytes = new ByteArrayOutputStream();
+	private final DataOutputStream methods = new DataOutputStream(methodBytes);
+	private int methodCount;
+
+	private final int thisClass;
+	private final int superClass;
+
+	private byte[] code;
+	private int length;
+	private int stack;
+	private int maxStack;
+	private int maxLocals;
+
+	/**
+	 * Create a public final class.
+	 * @param name internal name of the class to generate (e.g. <code>foo/Bar</code>)
+	 * @param superName internal name of the super class
+	 */
+	Bytecode(String name, String superName) {
+		this.thisClass = classRef(name);
+		this.superClass = classRef(superName);
+	}
+
+	private int entry(String key) {
+		Integer index = entries.get(key);
+		return index == null ? 0 : index.intValue();
+	}
+
+	private int entry(String key, int slots) {
+		int index = poolCount;
+		entries.put(key, index);
+		poolCount += slots;
+		if (poolCount > 0xffff) {
+			throw new IllegalStateException("Constant pool overflow");
+		}
+		return index;
+	}
+
+	int utf8(String value) {
+		String key = "U" + value;
+		int index = entry(key);
+		if (index == 0) {
+			try {
+				pool.writeByte(CONSTANT_UTF8);
+				pool.writeUTF(value);
+			} catch (IOException e) {
+				throw new IllegalStateException(e.getMessage());
+			}
+			index = entry(key, 1);
+		}
+		return index;
+	}
+
+	int classRef(String name) {
+		String key = "C" + name;
+		int index = entry(key);
+		if (index == 0) {
+			int nameIndex = utf8(name);
+			write(pool, CONSTANT_CLASS, nameIndex);
+			index = entry(key, 1);
+		}
+		return index;
+	}
+
+	int string(String value) {
+		String key = "S" + value;
+		int index = entry(key);
+		if (index == 0) {
+			int valueIndex = utf8(value);
+			write(pool, CONSTANT_STRING, valueIndex);
+			index = entry(key, 1);
+		}
+		return index;
+	}
+
+	int integer(int value) {
+		String key = "I" + value;
+		int index = entry(key);
+		if (index == 0) {
+			try {
+				pool.writeByte(CONSTANT_INTEGER);
+				pool.writeInt(value);
+			} catch (IOException e) {
+				throw new IllegalStateException(e.getMessage());
+			}
+			index = entry(key, 1);
+		}
+		return index;
+	}
+
+	private int member(int tag, String owner, String name, String desc) {
+		String key = tag + owner + "." + name + desc;
+		int index = entry(key);
+		if (index == 0) {
+			int ownerIndex = classRef(owner);
+			int nameAndType = entry("N" + name + desc);
+			if (nameAndType == 0) {
+				int nameIndex = utf8(name);
+				int descIndex = utf8(desc);
+				write(pool, CONSTANT_NAME_AND_TYPE, nameIndex, descIndex);
+				nameAndType = entry("N" + name + desc, 1);
+			}
+			write(pool, tag, ownerIndex, nameAndType);
+			index = entry(key, 1);
+		}
+		return index;
+	}
+
+	private static void write(DataOutputStream out, int tag, int... shorts) {
+		try {
+			out.writeByte(tag);
+			for (int value : shorts) {
+				out.writeShort(value);
+			}
+		} catch (IOException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Start a method. Subsequent instructions are added to the method's code.
+	 */
+	void begin(int locals) {
+		code = new byte[256];
+		length = 0;
+		stack = 0;
+		maxStack = 0;
+		maxLocals = locals;
+	}
+
+	/**
+	 * Finish a public method started by {@link #begin(int)}.
+	 */
+	void end(String name, String desc) {
+		if (length > 0xffff) {
+			throw new IllegalStateException("Method too large");
+		}
+		try {
+			methods.writeShort(0x0001); // ACC_PUBLIC
+			methods.writeShort(utf8(name));
+			methods.writeShort(utf8(desc));
+			methods.writeShort(1);
+			methods.writeShort(utf8("Code"));
+			methods.writeInt(12 + length);
+			methods.writeShort(maxStack);
+			methods.writeShort(maxLocals);
+			methods.writeInt(length);
+			methods.write(code, 0, length);
+			methods.writeShort(0); // exception table
+			methods.writeShort(0); // attributes
+		} catch (IOException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+		methodCount++;
+		code = null;
+	}
+
+	private void stack(int delta) {
+		stack += delta;
+		if (stack > maxStack) {
+			maxStack = stack;
+		}
+	}
+
+	private void u1(int value) {
+		if (length == code.length) {
+			byte[] bytes = new byte[2 * length];
+			System.arraycopy(code, 0, bytes, 0, length);
+			code = bytes;
+		}
+		code[length++] = (byte)value;
+	}
+
+	private void u2(int value) {
+		u1(value >> 8);
+		u1(value);
+	}
+
+	/**
+	 * Allocate a new local variable slot.
+	 */
+	int local() {
+		return maxLocals++;
+	}
+
+	void op(int opcode) {
+		u1(opcode);
+		switch (opcode) {
+			case ACONST_NULL:
+			case DUP:
+				stack(1);
+				break;
+			case AALOAD:
+			case POP:
+			case IXOR:
+			case ARETURN:
+				stack(-1);
+				break;
+		}
+	}
+
+	void iconst(int value) {
+		if (value >= -1 && value <= 5) {
+			u1(ICONST_0 + value);
+		} else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+			u1(BIPUSH);
+			u1(value);
+		} else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+			u1(SIPUSH);
+			u2(value);
+		} else {
+			ldc(integer(value));
+			return;
+		}
+		stack(1);
+	}
+
+	private void ldc(int index) {
+		if (index < 256) {
+			u1(LDC);
+			u1(index);
+		} else {
+			u1(LDC_W);
+			u2(index);
+		}
+		stack(1);
+	}
+
+	void ldcString(String value) {
+		ldc(string(value));
+	}
+
+	void ldcClass(String name) {
+		ldc(classRef(name));
+	}
+
+	void aload(int index) {
+		if (index > 0xff) {
+			throw new IllegalStateException("Too many locals");
+		}
+		u1(ALOAD);
+		u1(index);
+		stack(1);
+	}
+
+	void astore(int index) {
+		if (index > 0xff) {
+			throw new IllegalStateException("Too many locals");
+		}
+		u1(ASTORE);
+		u1(index);
+		stack(-1);
+	}
+
+	void type(int opcode, String name) {
+		u1(opcode);
+		u2(classRef(name));
+		if (opcode == NEW) {
+			stack(1);
+		}
+	}
+
+	void field(int opcode, String owner, String name, String desc) {
+		u1(opcode);
+		u2(member(CONSTANT_FIELDREF, owner, name, desc));
+		if (opcode == GETSTATIC) {
+			stack(1);
+		}
+	}
+
+	void invoke(int opcode, String owner, String name, String desc) {
+		u1(opcode);
+		u2(member(CONSTANT_METHODREF, owner, name, desc));
+		int delta = opcode == INVOKESTATIC ? 0 : -1;
+		int i = 1;
+		while (desc.charAt(i) != ')') {
+			char c = desc.charAt(i++);
+			if (c == 'J' || c == 'D') {
+				delta -= 2;
+			} else {
+				delta -= 1;
+				while (c == '[') {
+					c = desc.charAt(i++);
+				}
+				if (c == 'L') {
+					i = desc.indexOf(';', i) + 1;
+				}
+			}
+		}
+		char result = desc.charAt(i + 1);
+		delta += result == 'V' ? 0 : result == 'J' || result == 'D' ? 2 : 1;
+		stack(delta);
+	}
+
+	/**
+	 * Emit a forward jump.
+	 */
+	void jump(int opcode, Label label) {
+		label.jumps.add(length);
+		u1(opcode);
+		u2(0);
+		if (opcode != GOTO) {
+			stack(-1);
+		}
+		label.stack = stack;
+	}
+
+	/**
+	 * Bind label to the current position and patch the jumps to it. The stack depth is restored
+	 * to the depth recorded at the jumps (code following a <code>goto</code> is reached by jumps only).
+	 */
+	void mark(Label label) {
+		label.position = length;
+		for (int jump : label.jumps) {
+			int offset = label.position - jump;
+			if (offset > Short.MAX_VALUE) {
+				throw new IllegalStateException("Jump offset too large");
+			}
+			code[jump + 1] = (byte)(offset >> 8);
+			code[jump + 2] = (byte)offset;
+		}
+		if (label.stack >= 0) {
+			stack = label.stack;
+		}
+	}
+
+	/**
+	 * @return class file bytes
+	 */
+	byte[] toByteArray() {
+		byte[] result = null;
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(poolBytes.size() + methodBytes.size() + 32);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xCAFEBABE);
+			out.writeShort(0);  // minor version
+			out.writeShort(49); // major version (Java 5)
+			out.writeShort(poolCount);
+			poolBytes.writeTo(out);
+			out.writeShort(0x0031); // ACC_PUBLIC | ACC_FINAL | ACC_SUPER
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0); // interfaces
+			out.writeShort(0); // fields
+			out.writeShort(methodCount);
+			methodBytes.writeTo(out);
+			out.writeShort(0); // attributes
+			out.flush();
+			result = bytes.toByteArray();
+		} catch (IOException e) {
+			throw new IllegalStateException(e.getMessage());
+		}
+		return result;
+	}
+}
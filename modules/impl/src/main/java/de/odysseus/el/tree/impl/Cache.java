@@ -20,8 +20,9 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import de.odysseus.el.tree.ObservableTreeCache;
 import de.odysseus.el.tree.Tree;
-import de.odysseus.el.tree.TreeCache;
+import de.odysseus.el.tree.TreeStoreListener;
 
 /**
  * Concurrent (thread-safe) FIFO tree cache (using classes from
@@ -30,11 +31,12 @@ import de.odysseus.el.tree.TreeCache;
  * 
  * @author Christoph Beck
  */
-public final class Cache implements TreeCache {
+public final class Cache implements ObservableTreeCache {
 	private final ConcurrentMap<String, Tree> map;
 	private final ConcurrentLinkedQueue<String> queue;
 	private final AtomicInteger size;
 	private final int capacity;
+	private volatile TreeStoreListener listener;
 
 	/**
 	 * Creates a new cache with the specified capacity
@@ -68,16 +70,29 @@ public final class Cache implements TreeCache {
 		return size.get();
 	}
 
+	public void setListener(TreeStoreListener listener) {
+		this.listener = listener;
+	}
+
 	public Tree get(String expression) {
 		return map.get(expression);
 	}
 
+	public Tree peek(String expression) {
+		return map.get(expression);
+	}
+
 	public void put(String expression, Tree tree) {
 		if (map.putIfAbsent(expression, tree) == null) {
 			queue.offer(expression);
 			if (size.incrementAndGet() > capacity) {
 				size.decrementAndGet();
-				map.remove(queue.poll());
+				String eldest = queue.poll();
+				map.remove(eldest);
+				TreeStoreListener listener = this.listener;
+				if (listener != null) {
+					listener.evicted(eldest);
+				}
 			}
 		}
 	}
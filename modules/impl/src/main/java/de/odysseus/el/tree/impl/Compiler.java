@@ -0,0 +1,502 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.el.ELContext;
+import javax.el.MethodInfo;
+import javax.el.ValueReference;
+
+import de.odysseus.el.tree.Bindings;
+import de.odysseus.el.tree.Node;
+import de.odysseus.el.tree.impl.Bytecode.Label;
+import de.odysseus.el.tree.impl.ast.AstBinary;
+import de.odysseus.el.tree.impl.ast.AstBoolean;
+import de.odysseus.el.tree.impl.ast.AstBracket;
+import de.odysseus.el.tree.impl.ast.AstChoice;
+import de.odysseus.el.tree.impl.ast.AstComposite;
+import de.odysseus.el.tree.impl.ast.AstDot;
+import de.odysseus.el.tree.impl.ast.AstEval;
+import de.odysseus.el.tree.impl.ast.AstNested;
+import de.odysseus.el.tree.impl.ast.AstNode;
+import de.odysseus.el.tree.impl.ast.AstNull;
+import de.odysseus.el.tree.impl.ast.AstNumber;
+import de.odysseus.el.tree.impl.ast.AstString;
+import de.odysseus.el.tree.impl.ast.AstText;
+import de.odysseus.el.tree.impl.ast.AstUnary;
+
+/**
+ * Expression compiler. Translates an abstract syntax tree into a generated class, which evaluates
+ * the tree without walking it. Each generated class gets its own call sites, so the JVM can inline
+ * operations which are megamorphic in the shared tree interpreter.
+ *
+ * Literals, operators, choices, composites and property accessors are compiled. All other nodes
+ * (identifiers, functions, method invocations, syntax extensions or subclasses of the standard
+ * node types) are evaluated by calling back into the interpreter.
+ *
+ * Compilation is lazy: the node returned by {@link #compile(AstNode)} interprets its tree until it
+ * has been evaluated a certain number of times.
+ *
+ * @author Christoph Beck
+ */
+public class Compiler {
+	/**
+	 * Base class of generated evaluators.
+	 */
+	public static abstract class Evaluator {
+		protected final Object[] constants;
+
+		protected Evaluator(Object[] constants) {
+			this.constants = constants;
+		}
+
+		/**
+		 * Evaluate the compiled tree.
+		 */
+		public abstract Object eval(Bindings bindings, ELContext context);
+	}
+
+	/**
+	 * Node wrapper, which replaces tree evaluation by a compiled evaluator. All other methods
+	 * are delegated to the wrapped node.
+	 */
+	private static final class CompiledNode extends AstNode {
+		private final Compiler compiler;
+		private final AstNode node;
+		private volatile Evaluator evaluator;
+		private int count;
+
+		CompiledNode(Compiler compiler, AstNode node) {
+			this.compiler = compiler;
+			this.node = node;
+		}
+
+		@Override
+		public Object eval(Bindings bindings, ELContext context) {
+			Evaluator evaluator = this.evaluator;
+			if (evaluator != null) {
+				return evaluator.eval(bindings, context);
+			}
+			if (++count == compiler.threshold) {
+				compile();
+			}
+			return node.eval(bindings, context);
+		}
+
+		private synchronized void compile() {
+			if (evaluator == null) {
+				try {
+					evaluator = compiler.evaluator(node);
+				} catch (RuntimeException e) {
+					// keep interpreting...
+				} catch (LinkageError e) {
+					// keep interpreting...
+				}
+			}
+		}
+
+		@Override
+		public void appendStructure(StringBuilder builder, Bindings bindings) {
+			node.appendStructure(builder, bindings);
+		}
+
+		@Override
+		public int appendStructureHash(int h, Bindings bindings) {
+			return node.appendStructureHash(h, bindings);
+		}
+
+		public boolean isLiteralText() {
+			return node.isLiteralText();
+		}
+
+		public boolean isLeftValue() {
+			return node.isLeftValue();
+		}
+
+		public boolean isMethodInvocation() {
+			return node.isMethodInvocation();
+		}
+
+		public ValueReference getValueReference(Bindings bindings, ELContext context) {
+			return node.getValueReference(bindings, context);
+		}
+
+		public Class<?> getType(Bindings bindings, ELContext context) {
+			return node.getType(bindings, context);
+		}
+
+		public boolean isReadOnly(Bindings bindings, ELContext context) {
+			return node.isReadOnly(bindings, context);
+		}
+
+		public void setValue(Bindings bindings, ELContext context, Object value) {
+			node.setValue(bindings, context, value);
+		}
+
+		public MethodInfo getMethodInfo(Bindings bindings, ELContext context, Class<?> returnType, Class<?>[] paramTypes) {
+			return node.getMethodInfo(bindings, context, returnType, paramTypes);
+		}
+
+		public Object invoke(Bindings bindings, ELContext context, Class<?> returnType, Class<?>[] paramTypes, Object[] paramValues) {
+			return node.invoke(bindings, context, returnType, paramTypes, paramValues);
+		}
+
+		public int getCardinality() {
+			return node.getCardinality();
+		}
+
+		public Node getChild(int i) {
+			return node.getChild(i);
+		}
+
+		@Override
+		public String toString() {
+			return node.toString();
+		}
+	}
+
+	/**
+	 * Class loader used to define generated classes. We use one loader per class, so that
+	 * compiled classes can be unloaded as soon as their trees are garbage collected.
+	 */
+	private static final class Loader extends ClassLoader {
+		Loader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] bytes) {
+			return defineClass(name, bytes, 0, bytes.length);
+		}
+	}
+
+	/**
+	 * Default number of evaluations before a tree gets compiled.
+	 */
+	public static final int DEFAULT_THRESHOLD = 16;
+
+	private static final String BINDINGS = "de/odysseus/el/tree/Bindings";
+	private static final String CONTEXT = "javax/el/ELContext";
+	private static final String EVALUATOR = "de/odysseus/el/tree/impl/Compiler$Evaluator";
+	private static final String AST_NODE = "de/odysseus/el/tree/impl/ast/AstNode";
+	private static final String AST_PROPERTY = "de/odysseus/el/tree/impl/ast/AstProperty";
+	private static final String OBJECT = "java/lang/Object";
+	private static final String STRING = "java/lang/String";
+	private static final String BOOLEAN = "java/lang/Boolean";
+	private static final String STRING_BUILDER = "java/lang/StringBuilder";
+
+	private static final String EVAL = "(L" + BINDINGS + ";L" + CONTEXT + ";)L" + OBJECT + ";";
+	private static final String CONVERT = "(L" + OBJECT + ";Ljava/lang/Class;)L" + OBJECT + ";";
+	private static final String OPERATION = "(Lde/odysseus/el/misc/TypeConverter;L" + OBJECT + ";L" + OBJECT + ";)";
+
+	private static final Map<AstBinary.Operator, String> NUMBER_OPERATIONS = new HashMap<AstBinary.Operator, String>();
+	private static final Map<AstBinary.Operator, String> BOOLEAN_OPERATIONS = new HashMap<AstBinary.Operator, String>();
+
+	static {
+		NUMBER_OPERATIONS.put(AstBinary.ADD, "add");
+		NUMBER_OPERATIONS.put(AstBinary.SUB, "sub");
+		NUMBER_OPERATIONS.put(AstBinary.MUL, "mul");
+		NUMBER_OPERATIONS.put(AstBinary.DIV, "div");
+		NUMBER_OPERATIONS.put(AstBinary.MOD, "mod");
+		BOOLEAN_OPERATIONS.put(AstBinary.EQ, "eq");
+		BOOLEAN_OPERATIONS.put(AstBinary.NE, "ne");
+		BOOLEAN_OPERATIONS.put(AstBinary.LT, "lt");
+		BOOLEAN_OPERATIONS.put(AstBinary.LE, "le");
+		BOOLEAN_OPERATIONS.put(AstBinary.GT, "gt");
+		BOOLEAN_OPERATIONS.put(AstBinary.GE, "ge");
+	}
+
+	private static final AtomicInteger COUNTER = new AtomicInteger();
+
+	private static AstNode child(AstNode node, int i) {
+		return (AstNode)node.getChild(i);
+	}
+
+	/**
+	 * Generates code for a single tree.
+	 */
+	private static final class Generator {
+		private final Bytecode code;
+		private final List<Object> constants = new ArrayList<Object>();
+		private final int constantsLocal;
+
+		Generator(Bytecode code) {
+			this.code = code;
+			this.code.begin(3);
+			this.constantsLocal = code.local();
+			code.aload(0);
+			code.field(Bytecode.GETFIELD, EVALUATOR, "constants", "[L" + OBJECT + ";");
+			code.astore(constantsLocal);
+		}
+
+		void constant(Object value) {
+			code.aload(constantsLocal);
+			code.iconst(constants.size());
+			code.op(Bytecode.AALOAD);
+			constants.add(value);
+		}
+
+		void convert(AstNode node, String type) {
+			code.aload(1);
+			node(node);
+			code.ldcClass(type);
+			code.invoke(Bytecode.INVOKEVIRTUAL, BINDINGS, "convert", CONVERT);
+		}
+
+		void interpret(AstNode node) {
+			constant(node);
+			code.type(Bytecode.CHECKCAST, AST_NODE);
+			code.aload(1);
+			code.aload(2);
+			code.invoke(Bytecode.INVOKEVIRTUAL, AST_NODE, "eval", EVAL);
+		}
+
+		void node(AstNode node) {
+			Class<?> type = node.getClass();
+			if (type == AstEval.class || type == AstNested.class) {
+				node(child(node, 0));
+			} else if (type == AstNull.class) {
+				code.op(Bytecode.ACONST_NULL);
+			} else if (type == AstBoolean.class) {
+				boolean value = ((Boolean)node.eval(null, null)).booleanValue();
+				code.field(Bytecode.GETSTATIC, BOOLEAN, value ? "TRUE" : "FALSE", "L" + BOOLEAN + ";");
+			} else if (type == AstString.class || type == AstText.class) {
+				code.ldcString((String)node.eval(null, null));
+			} else if (type == AstNumber.class) {
+				constant(node.eval(null, null));
+			} else if (type == AstBinary.class && binary((AstBinary)node)) {
+				// done
+			} else if (type == AstUnary.class && unary((AstUnary)node)) {
+				// done
+			} else if (type == AstChoice.class) {
+				choice(node);
+			} else if (type == AstComposite.class) {
+				composite(node);
+			} else if (type == AstDot.class || type == AstBracket.class) {
+				property(node);
+			} else {
+				interpret(node);
+			}
+		}
+
+		boolean binary(AstBinary node) {
+			AstBinary.Operator operator = node.getOperator();
+			if (NUMBER_OPERATIONS.containsKey(operator)) {
+				code.aload(1);
+				node(child(node, 0));
+				node(child(node, 1));
+				code.invoke(Bytecode.INVOKESTATIC, "de/odysseus/el/misc/NumberOperations", NUMBER_OPERATIONS.get(operator), OPERATION + "Ljava/lang/Number;");
+			} else if (BOOLEAN_OPERATIONS.containsKey(operator)) {
+				code.aload(1);
+				node(child(node, 0));
+				node(child(node, 1));
+				code.invoke(Bytecode.INVOKESTATIC, "de/odysseus/el/misc/BooleanOperations", BOOLEAN_OPERATIONS.get(operator), OPERATION + "Z");
+				code.invoke(Bytecode.INVOKESTATIC, BOOLEAN, "valueOf", "(Z)L" + BOOLEAN + ";");
+			} else if (operator == AstBinary.AND || operator == AstBinary.OR) {
+				Label other = new Label();
+				Label end = new Label();
+				code.field(Bytecode.GETSTATIC, BOOLEAN, "TRUE", "L" + BOOLEAN + ";");
+				convert(child(node, 0), BOOLEAN);
+				code.invoke(Bytecode.INVOKEVIRTUAL, OBJECT, "equals", "(L" + OBJECT + ";)Z");
+				if (operator == AstBinary.AND) { // left is true ? convert(right) : false
+					code.jump(Bytecode.IFEQ, other);
+					convert(child(node, 1), BOOLEAN);
+					code.jump(Bytecode.GOTO, end);
+					code.mark(other);
+					code.field(Bytecode.GETSTATIC, BOOLEAN, "FALSE", "L" + BOOLEAN + ";");
+				} else { // left is true ? true : convert(right)
+					code.jump(Bytecode.IFEQ, other);
+					code.field(Bytecode.GETSTATIC, BOOLEAN, "TRUE", "L" + BOOLEAN + ";");
+					code.jump(Bytecode.GOTO, end);
+					code.mark(other);
+					convert(child(node, 1), BOOLEAN);
+				}
+				code.mark(end);
+			} else {
+				return false;
+			}
+			return true;
+		}
+
+		boolean unary(AstUnary node) {
+			AstUnary.Operator operator = node.getOperator();
+			if (operator == AstUnary.NEG) {
+				code.aload(1);
+				node(child(node, 0));
+				code.invoke(Bytecode.INVOKESTATIC, "de/odysseus/el/misc/NumberOperations", "neg", "(Lde/odysseus/el/misc/TypeConverter;L" + OBJECT + ";)Ljava/lang/Number;");
+			} else if (operator == AstUnary.EMPTY) {
+				code.aload(1);
+				node(child(node, 0));
+				code.invoke(Bytecode.INVOKESTATIC, "de/odysseus/el/misc/BooleanOperations", "empty", "(Lde/odysseus/el/misc/TypeConverter;L" + OBJECT + ";)Z");
+				code.invoke(Bytecode.INVOKESTATIC, BOOLEAN, "valueOf", "(Z)L" + BOOLEAN + ";");
+			} else if (operator == AstUnary.NOT) {
+				convert(child(node, 0), BOOLEAN);
+				code.type(Bytecode.CHECKCAST, BOOLEAN);
+				code.invoke(Bytecode.INVOKEVIRTUAL, BOOLEAN, "booleanValue", "()Z");
+				code.iconst(1);
+				code.op(Bytecode.IXOR);
+				code.invoke(Bytecode.INVOKESTATIC, BOOLEAN, "valueOf", "(Z)L" + BOOLEAN + ";");
+			} else {
+				return false;
+			}
+			return true;
+		}
+
+		void choice(AstNode node) {
+			Label no = new Label();
+			Label end = new Label();
+			convert(child(node, 0), BOOLEAN);
+			code.type(Bytecode.CHECKCAST, BOOLEAN);
+			code.invoke(Bytecode.INVOKEVIRTUAL, BOOLEAN, "booleanValue", "()Z");
+			code.jump(Bytecode.IFEQ, no);
+			node(child(node, 1));
+			code.jump(Bytecode.GOTO, end);
+			code.mark(no);
+			node(child(node, 2));
+			code.mark(end);
+		}
+
+		void composite(AstNode node) {
+			code.type(Bytecode.NEW, STRING_BUILDER);
+			code.op(Bytecode.DUP);
+			code.iconst(16);
+			code.invoke(Bytecode.INVOKESPECIAL, STRING_BUILDER, "<init>", "(I)V");
+			for (int i = 0; i < node.getCardinality(); i++) {
+				convert(child(node, i), STRING);
+				code.type(Bytecode.CHECKCAST, STRING);
+				code.invoke(Bytecode.INVOKEVIRTUAL, STRING_BUILDER, "append", "(L" + STRING + ";)L" + STRING_BUILDER + ";");
+			}
+			code.invoke(Bytecode.INVOKEVIRTUAL, STRING_BUILDER, "toString", "()L" + STRING + ";");
+		}
+
+		void property(AstNode node) {
+			Label notNull = new Label();
+			Label end = new Label();
+			int base = code.local();
+			node(child(node, 0));
+			code.astore(base);
+			code.aload(base);
+			code.jump(Bytecode.IFNONNULL, notNull);
+			code.op(Bytecode.ACONST_NULL);
+			code.jump(Bytecode.GOTO, end);
+			code.mark(notNull);
+			constant(node);
+			code.type(Bytecode.CHECKCAST, AST_PROPERTY);
+			code.aload(1);
+			code.aload(2);
+			code.aload(base);
+			code.invoke(Bytecode.INVOKEVIRTUAL, AST_PROPERTY, "eval", "(L" + BINDINGS + ";L" + CONTEXT + ";L" + OBJECT + ";)L" + OBJECT + ";");
+			code.mark(end);
+		}
+
+		Object[] finish() {
+			code.op(Bytecode.ARETURN);
+			code.end("eval", EVAL);
+			return constants.toArray();
+		}
+	}
+
+	private final int threshold;
+
+	/**
+	 * Create a compiler using the default threshold.
+	 */
+	public Compiler() {
+		this(DEFAULT_THRESHOLD);
+	}
+
+	/**
+	 * Create a compiler.
+	 * @param threshold number of evaluations before a tree gets compiled
+	 */
+	public Compiler(int threshold) {
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Answer <code>true</code> if the given node would be compiled (rather than interpreted)
+	 * by a generated evaluator.
+	 */
+	protected boolean isCompilable(AstNode node) {
+		Class<?> type = node.getClass();
+		if (type == AstEval.class || type == AstNested.class) {
+			return isCompilable(child(node, 0));
+		}
+		if (type == AstBinary.class) {
+			AstBinary.Operator operator = ((AstBinary)node).getOperator();
+			return NUMBER_OPERATIONS.containsKey(operator) || BOOLEAN_OPERATIONS.containsKey(operator)
+					|| operator == AstBinary.AND || operator == AstBinary.OR;
+		}
+		if (type == AstUnary.class) {
+			AstUnary.Operator operator = ((AstUnary)node).getOperator();
+			return operator == AstUnary.NEG || operator == AstUnary.EMPTY || operator == AstUnary.NOT;
+		}
+		return type == AstChoice.class || type == AstComposite.class || type == AstDot.class || type == AstBracket.class;
+	}
+
+	/**
+	 * Wrap the given tree root. The resulting node will evaluate the tree using a generated
+	 * evaluator as soon as the tree has been evaluated <code>threshold</code> times. If compiling
+	 * makes no sense for the given node (e.g. a plain identifier or text), it is returned as is.
+	 * @param node tree root
+	 * @return compiling node
+	 */
+	public AstNode compile(AstNode node) {
+		if (node instanceof CompiledNode || !isCompilable(node)) {
+			return node;
+		}
+		return new CompiledNode(this, node);
+	}
+
+	/**
+	 * Answer the original node, if the given node has been wrapped by a compiler.
+	 */
+	static AstNode unwrap(AstNode node) {
+		return node instanceof CompiledNode ? ((CompiledNode)node).node : node;
+	}
+
+	/**
+	 * Generate an evaluator for the given tree.
+	 * @param node tree root
+	 * @return evaluator instance
+	 */
+	public Evaluator evaluator(AstNode node) {
+		String name = "de.odysseus.el.tree.impl.CompiledExpression" + COUNTER.incrementAndGet();
+		Bytecode code = new Bytecode(name.replace('.', '/'), EVALUATOR);
+
+		code.begin(2);
+		code.aload(0);
+		code.aload(1);
+		code.invoke(Bytecode.INVOKESPECIAL, EVALUATOR, "<init>", "([L" + OBJECT + ";)V");
+		code.op(Bytecode.RETURN);
+		code.end("<init>", "([L" + OBJECT + ";)V");
+
+		Generator generator = new Generator(code);
+		generator.node(node);
+		Object[] constants = generator.finish();
+
+		Class<?> type = new Loader(Compiler.class.getClassLoader()).define(name, code.toByteArray());
+		try {
+			return (Evaluator)type.getConstructor(Object[].class).newInstance((Object)constants);
+		} catch (Exception e) {
+			throw new IllegalStateException("Cannot instantiate " + name, e);
+		}
+	}
+}
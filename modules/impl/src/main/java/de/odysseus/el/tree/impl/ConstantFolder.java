@@ -0,0 +1,213 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.odysseus.el.tree.Bindings;
+import de.odysseus.el.tree.impl.ast.AstBinary;
+import de.odysseus.el.tree.impl.ast.AstBoolean;
+import de.odysseus.el.tree.impl.ast.AstChoice;
+import de.odysseus.el.tree.impl.ast.AstComposite;
+import de.odysseus.el.tree.impl.ast.AstEval;
+import de.odysseus.el.tree.impl.ast.AstLiteral;
+import de.odysseus.el.tree.impl.ast.AstNested;
+import de.odysseus.el.tree.impl.ast.AstNode;
+import de.odysseus.el.tree.impl.ast.AstNull;
+import de.odysseus.el.tree.impl.ast.AstNumber;
+import de.odysseus.el.tree.impl.ast.AstString;
+import de.odysseus.el.tree.impl.ast.AstUnary;
+
+/**
+ * Constant folder. Replaces operator and choice subtrees, whose operands are literals, by their
+ * value, e.g. <code>${1024 * 1024}</code> becomes <code>${1048576}</code> and
+ * <code>${true ? x : y}</code> becomes <code>${(x)}</code>.
+ *
+ * Since the type converter is not known before binding a tree, an operation is only folded if
+ * its operands need no coercion beyond what the specification fixes for the standard number,
+ * string and boolean types (e.g. <code>${'1' + 1}</code> is not folded). Operations failing at
+ * build time (e.g. <code>${1 % 0}</code>) are left to fail at evaluation time.
+ *
+ * Only the standard node types are folded; identifiers, functions, properties and syntax
+ * extensions are left untouched. Identifiers and functions from pruned branches remain in the
+ * tree's node lists and are still bound.
+ *
+ * @author Christoph Beck
+ */
+public class ConstantFolder {
+	private static final Bindings BINDINGS = new Bindings(null, null);
+
+	/**
+	 * Fold the given tree.
+	 * @param node root node
+	 * @return folded node (<code>node</code> if nothing could be folded)
+	 */
+	public AstNode fold(AstNode node) {
+		Class<?> type = node.getClass();
+		if (type == AstEval.class) {
+			AstNode child = (AstNode)node.getChild(0);
+			AstNode folded = fold(child);
+			return folded == child ? node : new AstEval(folded, ((AstEval)node).isDeferred());
+		}
+		if (type == AstComposite.class) {
+			List<AstNode> nodes = new ArrayList<AstNode>(node.getCardinality());
+			boolean changed = false;
+			for (int i = 0; i < node.getCardinality(); i++) {
+				AstNode child = (AstNode)node.getChild(i);
+				AstNode folded = fold(child);
+				changed |= folded != child;
+				nodes.add(folded);
+			}
+			return changed ? new AstComposite(nodes) : node;
+		}
+		if (type == AstNested.class) {
+			AstNode child = (AstNode)node.getChild(0);
+			AstNode folded = fold(child);
+			if (folded instanceof AstLiteral) {
+				return folded;
+			}
+			return folded == child ? node : new AstNested(folded);
+		}
+		if (type == AstUnary.class) {
+			return unary((AstUnary)node);
+		}
+		if (type == AstBinary.class) {
+			return binary((AstBinary)node);
+		}
+		if (type == AstChoice.class) {
+			return choice((AstChoice)node);
+		}
+		return node;
+	}
+
+	private AstNode unary(AstUnary node) {
+		AstNode child = node.getChild(0);
+		AstNode folded = fold(child);
+		if (isConstant(folded)) {
+			Object value = folded.eval(BINDINGS, null);
+			AstUnary.Operator operator = node.getOperator();
+			if (operator == AstUnary.EMPTY
+					|| operator == AstUnary.NEG && value instanceof Number
+					|| operator == AstUnary.NOT && value instanceof Boolean) {
+				AstNode result = evaluate(new AstUnary(folded, operator));
+				if (result != null) {
+					return result;
+				}
+			}
+		}
+		return folded == child ? node : new AstUnary(folded, node.getOperator());
+	}
+
+	private AstNode binary(AstBinary node) {
+		AstNode left = node.getChild(0);
+		AstNode right = node.getChild(1);
+		AstNode foldedLeft = fold(left);
+		AstNode foldedRight = fold(right);
+		AstBinary.Operator operator = node.getOperator();
+		if (isConstant(foldedLeft)) {
+			Object l = foldedLeft.eval(BINDINGS, null);
+			if (operator == AstBinary.AND && Boolean.FALSE.equals(l)) {
+				return new AstBoolean(false);
+			}
+			if (operator == AstBinary.OR && Boolean.TRUE.equals(l)) {
+				return new AstBoolean(true);
+			}
+			if (isConstant(foldedRight) && isFoldable(operator, l, foldedRight.eval(BINDINGS, null))) {
+				AstNode result = evaluate(new AstBinary(foldedLeft, foldedRight, operator));
+				if (result != null) {
+					return result;
+				}
+			}
+		}
+		if (foldedLeft == left && foldedRight == right) {
+			return node;
+		}
+		return new AstBinary(foldedLeft, foldedRight, operator);
+	}
+
+	private AstNode choice(AstChoice node) {
+		AstNode question = node.getChild(0);
+		AstNode yes = node.getChild(1);
+		AstNode no = node.getChild(2);
+		AstNode foldedQuestion = fold(question);
+		if (foldedQuestion.getClass() == AstBoolean.class) {
+			AstNode branch = fold(Boolean.TRUE.equals(foldedQuestion.eval(BINDINGS, null)) ? yes : no);
+			// keep choice an rvalue
+			return branch.isLeftValue() || branch.isMethodInvocation() ? new AstNested(branch) : branch;
+		}
+		AstNode foldedYes = fold(yes);
+		AstNode foldedNo = fold(no);
+		if (foldedQuestion == question && foldedYes == yes && foldedNo == no) {
+			return node;
+		}
+		return new AstChoice(foldedQuestion, foldedYes, foldedNo);
+	}
+
+	private static boolean isFoldable(AstBinary.Operator operator, Object l, Object r) {
+		if (operator == AstBinary.AND || operator == AstBinary.OR) {
+			return l instanceof Boolean && r instanceof Boolean;
+		}
+		if (operator == AstBinary.ADD || operator == AstBinary.SUB || operator == AstBinary.MUL
+				|| operator == AstBinary.DIV || operator == AstBinary.MOD) {
+			return l instanceof Number && r instanceof Number;
+		}
+		if (operator == AstBinary.EQ || operator == AstBinary.NE) {
+			return l instanceof Number && r instanceof Number
+				|| l instanceof String && r instanceof String
+				|| l instanceof Boolean && r instanceof Boolean;
+		}
+		if (operator == AstBinary.LT || operator == AstBinary.LE
+				|| operator == AstBinary.GT || operator == AstBinary.GE) {
+			return l instanceof Number && r instanceof Number
+				|| l instanceof String && r instanceof String;
+		}
+		return false;
+	}
+
+	private static boolean isConstant(AstNode node) {
+		Class<?> type = node.getClass();
+		return type == AstNumber.class || type == AstString.class || type == AstBoolean.class || type == AstNull.class;
+	}
+
+	/**
+	 * Evaluate node and answer literal node or <code>null</code> if the node's value cannot be
+	 * represented as a literal.
+	 */
+	private static AstNode evaluate(AstNode node) {
+		Object value;
+		try {
+			value = node.eval(BINDINGS, null);
+		} catch (RuntimeException e) {
+			return null;
+		}
+		if (value instanceof Boolean) {
+			return new AstBoolean(((Boolean)value).booleanValue());
+		}
+		if (value instanceof String) {
+			return new AstString((String)value);
+		}
+		if (value instanceof Long || value instanceof BigInteger || value instanceof BigDecimal) {
+			return new AstNumber((Number)value);
+		}
+		if (value instanceof Double && !((Double)value).isNaN() && !((Double)value).isInfinite()) {
+			return new AstNumber((Number)value);
+		}
+		return null;
+	}
+}
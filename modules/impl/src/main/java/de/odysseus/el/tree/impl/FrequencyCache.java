@@ -0,0 +1,329 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.odysseus.el.tree.ObservableTreeCache;
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.TreeStoreListener;
+
+/**
+ * Concurrent (thread-safe) frequency aware tree cache, following the W-TinyLFU policy.
+ *
+ * New entries are added to a small LRU "window". Entries leaving the window have to compete
+ * with the least recently used entry of the main area, which is a segmented LRU consisting of a
+ * "probation" and a "protected" segment. The entry which has been accessed less frequently is
+ * evicted. Access frequencies are estimated by a count-min sketch of 4 bit counters, which are
+ * periodically halved, so that old popularity fades. Thus, one-off expressions cannot flush
+ * frequently used expressions from the cache.
+ *
+ * Lookups are served from a concurrent map without locking. Updating the recency/frequency
+ * information on a cache hit is skipped if another thread holds the policy lock.
+ *
+ * @author Christoph Beck
+ */
+public final class FrequencyCache implements ObservableTreeCache {
+	private static final int WINDOW = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+
+	/**
+	 * Cache entry, linked into one of the policy segments.
+	 */
+	private static final class Node {
+		final String expression;
+		final Tree tree;
+		int segment;
+		Node prev;
+		Node next;
+
+		Node(String expression, Tree tree) {
+			this.expression = expression;
+			this.tree = tree;
+		}
+	}
+
+	/**
+	 * Access ordered list of nodes (least recently used first).
+	 */
+	private static final class Segment {
+		final Node head = new Node(null, null);
+		int size;
+
+		Segment() {
+			head.prev = head.next = head;
+		}
+
+		Node first() {
+			return head.next == head ? null : head.next;
+		}
+
+		void add(Node node) {
+			node.prev = head.prev;
+			node.next = head;
+			head.prev.next = node;
+			head.prev = node;
+			size++;
+		}
+
+		void remove(Node node) {
+			node.prev.next = node.next;
+			node.next.prev = node.prev;
+			node.prev = node.next = null;
+			size--;
+		}
+
+		void touch(Node node) {
+			remove(node);
+			add(node);
+		}
+	}
+
+	/**
+	 * Count-min sketch with four 4 bit counters per entry. Sixteen counters are packed into a
+	 * <code>long</code>.
+	 */
+	private static final class Sketch {
+		private static final long[] SEEDS = {
+			0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+		};
+		private static final long RESET_MASK = 0x7777777777777777L;
+
+		private final long[] table;
+		private final int mask;
+		private final int sampleSize;
+		private int additions;
+
+		Sketch(int capacity) {
+			int length = 8;
+			while (length < capacity && length < (1 << 24)) {
+				length <<= 1;
+			}
+			this.table = new long[length];
+			this.mask = length - 1;
+			this.sampleSize = 10 * length;
+		}
+
+		private int index(int hash, int i) {
+			long h = (hash + SEEDS[i]) * SEEDS[i];
+			h += h >>> 32;
+			return (int)h;
+		}
+
+		int frequency(String expression) {
+			int hash = spread(expression.hashCode());
+			int frequency = 15;
+			for (int i = 0; i < 4; i++) {
+				int index = index(hash, i);
+				int offset = ((index >>> 24) & 15) << 2;
+				frequency = Math.min(frequency, (int)((table[index & mask] >>> offset) & 15L));
+			}
+			return frequency;
+		}
+
+		void increment(String expression) {
+			int hash = spread(expression.hashCode());
+			boolean added = false;
+			for (int i = 0; i < 4; i++) {
+				int index = index(hash, i);
+				int offset = ((index >>> 24) & 15) << 2;
+				long value = table[index & mask];
+				if (((value >>> offset) & 15L) < 15L) {
+					table[index & mask] = value + (1L << offset);
+					added = true;
+				}
+			}
+			if (added && ++additions == sampleSize) {
+				for (int i = 0; i < table.length; i++) {
+					table[i] = (table[i] >>> 1) & RESET_MASK;
+				}
+				additions /= 2;
+			}
+		}
+
+		private static int spread(int hash) {
+			hash ^= hash >>> 16;
+			hash *= 0x45d9f3b;
+			return hash ^ (hash >>> 16);
+		}
+	}
+
+	private final ConcurrentMap<String, Node> map;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Segment window = new Segment();
+	private final Segment probation = new Segment();
+	private final Segment protect = new Segment();
+	private final Sketch sketch;
+	private final int capacity;
+	private final int windowCapacity;
+	private final int protectedCapacity;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+	private volatile TreeStoreListener listener;
+
+	/**
+	 * Creates a new cache with the specified capacity and default concurrency level (16).
+	 *
+	 * @param capacity
+	 *            Cache size (must be positive).
+	 */
+	public FrequencyCache(int capacity) {
+		this(capacity, 16);
+	}
+
+	/**
+	 * Creates a new cache with the specified capacity and concurrency level.
+	 *
+	 * @param capacity
+	 *            Cache size (must be positive).
+	 * @param concurrencyLevel
+	 *            The estimated number of concurrently updating threads. The
+	 *            implementation performs internal sizing to try to accommodate
+	 *            this many threads.
+	 */
+	public FrequencyCache(int capacity, int concurrencyLevel) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("Cache capacity must be positive: " + capacity);
+		}
+		this.map = new ConcurrentHashMap<String, Node>(16, 0.75f, concurrencyLevel);
+		this.sketch = new Sketch(capacity);
+		this.capacity = capacity;
+		this.windowCapacity = Math.max(1, capacity / 100);
+		this.protectedCapacity = (int)(0.8 * (capacity - windowCapacity));
+	}
+
+	public int size() {
+		return map.size();
+	}
+
+	public void setListener(TreeStoreListener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @return number of lookups which found a tree
+	 */
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	/**
+	 * @return number of lookups which did not find a tree
+	 */
+	public long getMissCount() {
+		return misses.get();
+	}
+
+	/**
+	 * @return number of trees removed to make room for others
+	 */
+	public long getEvictionCount() {
+		return evictions.get();
+	}
+
+	public Tree get(String expression) {
+		Node node = map.get(expression);
+		if (node == null) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		if (lock.tryLock()) {
+			try {
+				if (node.prev != null) { // not yet evicted
+					sketch.increment(expression);
+					touch(node);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+		return node.tree;
+	}
+
+	public Tree peek(String expression) {
+		Node node = map.get(expression);
+		return node == null ? null : node.tree;
+	}
+
+	public void put(String expression, Tree tree) {
+		lock.lock();
+		try {
+			if (map.containsKey(expression)) {
+				return;
+			}
+			Node node = new Node(expression, tree);
+			sketch.increment(expression);
+			node.segment = WINDOW;
+			window.add(node);
+			map.put(expression, node);
+			if (window.size > windowCapacity) {
+				Node candidate = window.first();
+				window.remove(candidate);
+				candidate.segment = PROBATION;
+				probation.add(candidate);
+				if (window.size + probation.size + protect.size > capacity) {
+					Node victim = probation.first();
+					if (victim != candidate && sketch.frequency(candidate.expression) > sketch.frequency(victim.expression)) {
+						evict(victim);
+					} else {
+						evict(candidate);
+					}
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void touch(Node node) {
+		switch (node.segment) {
+			case WINDOW:
+				window.touch(node);
+				break;
+			case PROBATION:
+				probation.remove(node);
+				node.segment = PROTECTED;
+				protect.add(node);
+				if (protect.size > protectedCapacity) {
+					Node demoted = protect.first();
+					protect.remove(demoted);
+					demoted.segment = PROBATION;
+					probation.add(demoted);
+				}
+				break;
+			case PROTECTED:
+				protect.touch(node);
+				break;
+		}
+	}
+
+	private void evict(Node node) {
+		probation.remove(node);
+		map.remove(node.expression);
+		evictions.incrementAndGet();
+		TreeStoreListener listener = this.listener;
+		if (listener != null) {
+			listener.evicted(node.expression);
+		}
+	}
+}
@@ -130,10 +130,27 @@ public class Parser {
 		this.scanner = createScanner(input);
 	}
 
+	/**
+	 * Create a parser reading from a character sequence. String input is passed to
+	 * {@link #createScanner(String)}, other input to {@link #createScanner(CharSequence)}.
+	 */
+	public Parser(Builder context, CharSequence input) {
+		this.context = context;
+		this.scanner = input instanceof String ? createScanner((String)input) : createScanner(input);
+	}
+
 	protected Scanner createScanner(String expression) {
 		return new Scanner(expression);
 	}
 
+	/**
+	 * Create a scanner for non-string input. Subclasses providing their own scanner should
+	 * override this method as well as {@link #createScanner(String)}.
+	 */
+	protected Scanner createScanner(CharSequence expression) {
+		return new Scanner(expression);
+	}
+
 	public void putExtensionHandler(Scanner.ExtensionToken token, ExtensionHandler extension) {
 		if (extensions.isEmpty()) {
 			extensions = new HashMap<Scanner.ExtensionToken, ExtensionHandler>(16);
@@ -286,11 +303,11 @@ public class Parser {
 			if (t == null) {
 				t = new AstText("");
 			}
-			return new Tree(t, functions, identifiers, false);
+			return createTree(t, false);
 		}
 		AstEval e = eval();
 		if (token.getSymbol() == EOF && t == null) {
-			return new Tree(e, functions, identifiers, e.isDeferred());
+			return createTree(e, e.isDeferred());
 		}
 		ArrayList<AstNode> list = new ArrayList<AstNode>();
 		if (t != null) {
@@ -312,7 +329,22 @@ public class Parser {
 				list.add(t);
 			}
 		}
-		return new Tree(createAstComposite(list), functions, identifiers, e.isDeferred());
+		return createTree(createAstComposite(list), e.isDeferred());
+	}
+
+	/**
+	 * Create the tree for the given root node. If the {@link Feature#CONSTANT_FOLDING} feature is
+	 * enabled, the root node is folded first. If the {@link Feature#COMPILE} feature is enabled,
+	 * the root node is wrapped by a compiling node.
+	 */
+	protected Tree createTree(AstNode root, boolean deferred) {
+		if (context.isEnabled(Feature.CONSTANT_FOLDING)) {
+			root = context.getConstantFolder().fold(root);
+		}
+		if (context.isEnabled(Feature.COMPILE)) {
+			root = context.getCompiler().compile(root);
+		}
+		return new Tree(root, functions, identifiers, deferred);
 	}
 
 	/**
@@ -0,0 +1,372 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import de.odysseus.el.tree.ObservableTreeCache;
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.TreeCache;
+import de.odysseus.el.tree.TreeStoreListener;
+
+/**
+ * Tree cache, which can be saved to and loaded from a snapshot file. The cache delegates to
+ * another tree cache. Trees are encoded using a {@link TreeCodec}, so that loading a tree from
+ * the snapshot does not require parsing its expression.
+ *
+ * The snapshot file is memory-mapped by {@link #load()}. Trees are decoded lazily, when they are
+ * requested for the first time. A snapshot written for a different builder (class or features)
+ * or encoding version is ignored.
+ *
+ * A snapshot contains the trees currently held by the delegate. The cache only remembers the
+ * expression strings of these trees; if the delegate is an {@link ObservableTreeCache}, evicted
+ * expressions are forgotten, otherwise the first expressions (up to the limit) are remembered.
+ *
+ * Snapshot layout: header (see {@link TreeCodec#writeHeader(java.io.DataOutput)}), entry count,
+ * and for each entry the expression string, the length of the encoded tree and the encoded tree.
+ *
+ * @author Christoph Beck
+ */
+public final class PersistentCache implements ObservableTreeCache {
+	/**
+	 * Input stream reading from a byte buffer.
+	 */
+	private static final class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) {
+			if (length == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			length = Math.min(length, buffer.remaining());
+			buffer.get(bytes, offset, length);
+			return length;
+		}
+	}
+
+	private static final Logger LOG = Logger.getLogger(PersistentCache.class.getName());
+
+	/**
+	 * Caches to be saved on shutdown by file. Caches are weakly referenced, so that registering
+	 * a cache does not keep its trees alive.
+	 */
+	private static final Map<File, WeakReference<PersistentCache>> shutdownCaches = new HashMap<File, WeakReference<PersistentCache>>();
+	private static Thread shutdownHook;
+
+	private final TreeCache delegate;
+	private final TreeCodec codec;
+	private final File file;
+	private final int limit;
+	private final ConcurrentMap<String, Boolean> expressions = new ConcurrentHashMap<String, Boolean>();
+	private final ConcurrentMap<String, ByteBuffer> snapshot = new ConcurrentHashMap<String, ByteBuffer>();
+	private final boolean observable;
+	private volatile TreeStoreListener listener;
+
+	/**
+	 * Create a persistent cache.
+	 * @param delegate the cache actually holding the trees
+	 * @param builder the builder used to create the cached trees
+	 * @param file snapshot file
+	 * @param limit maximum number of trees to save
+	 */
+	public PersistentCache(TreeCache delegate, Builder builder, File file, int limit) {
+		this.delegate = delegate;
+		this.codec = new TreeCodec(builder);
+		this.file = file;
+		this.limit = limit;
+		this.observable = delegate instanceof ObservableTreeCache;
+		if (observable) {
+			((ObservableTreeCache)delegate).setListener(new TreeStoreListener() {
+				public void hit(String expression) {
+					TreeStoreListener listener = PersistentCache.this.listener;
+					if (listener != null) {
+						listener.hit(expression);
+					}
+				}
+				public void miss(String expression) {
+					TreeStoreListener listener = PersistentCache.this.listener;
+					if (listener != null) {
+						listener.miss(expression);
+					}
+				}
+				public void built(String expression, long nanos) {
+					TreeStoreListener listener = PersistentCache.this.listener;
+					if (listener != null) {
+						listener.built(expression, nanos);
+					}
+				}
+				public void evicted(String expression) {
+					expressions.remove(expression);
+					TreeStoreListener listener = PersistentCache.this.listener;
+					if (listener != null) {
+						listener.evicted(expression);
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * @return the snapshot file
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	public int size() {
+		return observable ? ((ObservableTreeCache)delegate).size() : expressions.size();
+	}
+
+	public void setListener(TreeStoreListener listener) {
+		this.listener = listener;
+	}
+
+	public Tree get(String expression) {
+		Tree tree = delegate.get(expression);
+		if (tree == null) {
+			ByteBuffer buffer = snapshot.remove(expression);
+			if (buffer != null) {
+				try {
+					tree = codec.decode(new DataInputStream(new ByteBufferInputStream(buffer.duplicate())));
+				} catch (IOException e) {
+					LOG.log(Level.WARNING, "Cannot decode tree of " + expression + " from snapshot file " + file, e);
+					return null;
+				}
+				put(expression, tree);
+			}
+		}
+		return tree;
+	}
+
+	/**
+	 * Lookup a tree held by the delegate. Snapshot entries are not decoded.
+	 */
+	public Tree peek(String expression) {
+		return observable ? ((ObservableTreeCache)delegate).peek(expression) : delegate.get(expression);
+	}
+
+	public void put(String expression, Tree tree) {
+		// record first, the delegate may evict the expression right away
+		if (observable || expressions.size() < limit) {
+			expressions.put(expression, Boolean.TRUE);
+		}
+		delegate.put(expression, tree);
+	}
+
+	/**
+	 * Load the snapshot file. Entries are decoded on demand.
+	 * @return number of entries available from the snapshot (<code>0</code> if the file does not
+	 *         exist or has been written by an incompatible builder)
+	 * @throws IOException if the snapshot cannot be read
+	 */
+	public int load() throws IOException {
+		if (!file.isFile()) {
+			return 0;
+		}
+		ByteBuffer buffer = null;
+		FileInputStream input = new FileInputStream(file);
+		try {
+			FileChannel channel = input.getChannel();
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} finally {
+			input.close();
+		}
+		DataInput in = new DataInputStream(new ByteBufferInputStream(buffer));
+		if (!codec.readHeader(in)) {
+			return 0;
+		}
+		int count = TreeCodec.readInt(in);
+		for (int i = 0; i < count; i++) {
+			String expression = TreeCodec.readString(in);
+			int length = TreeCodec.readInt(in);
+			if (length > buffer.remaining()) {
+				throw new IOException("Corrupt snapshot file: " + file);
+			}
+			ByteBuffer entry = buffer.slice();
+			entry.limit(length);
+			buffer.position(buffer.position() + length);
+			snapshot.put(expression, entry);
+		}
+		return count;
+	}
+
+	/**
+	 * Save a snapshot. This includes trees currently held by the delegate and entries of the
+	 * loaded snapshot, which have not been used yet (up to the limit given at construction time).
+	 * Trees which cannot be encoded (e.g. containing syntax extensions) are skipped.
+	 * The snapshot is written to a temporary file first, which then replaces the snapshot file.
+	 * Before that, unused entries of the loaded snapshot are copied to the heap, so that the
+	 * mapped snapshot file is no longer referenced.
+	 * @return number of saved entries
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public int save() throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+		DataOutputStream entries = new DataOutputStream(bytes);
+		int count = 0;
+		ByteArrayOutputStream tree = new ByteArrayOutputStream(256);
+		for (String expression : expressions.keySet()) {
+			Tree value = count < limit ? delegate.get(expression) : null;
+			if (value != null && codec.isEncodable(value)) {
+				tree.reset();
+				codec.encode(value, new DataOutputStream(tree));
+				TreeCodec.writeString(entries, expression);
+				TreeCodec.writeInt(entries, tree.size());
+				tree.writeTo(entries);
+				count++;
+			}
+		}
+		for (Map.Entry<String, ByteBuffer> entry : snapshot.entrySet()) {
+			ByteBuffer buffer = entry.getValue().duplicate();
+			byte[] data = new byte[buffer.remaining()];
+			buffer.get(data);
+			snapshot.replace(entry.getKey(), entry.getValue(), ByteBuffer.wrap(data));
+			if (count < limit && !expressions.containsKey(entry.getKey())) {
+				TreeCodec.writeString(entries, entry.getKey());
+				TreeCodec.writeInt(entries, data.length);
+				entries.write(data);
+				count++;
+			}
+		}
+		entries.flush();
+
+		File parent = file.getAbsoluteFile().getParentFile();
+		File temp = File.createTempFile(file.getName(), ".tmp", parent);
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				codec.writeHeader(out);
+				TreeCodec.writeInt(out, count);
+				bytes.writeTo(out);
+			} finally {
+				out.close();
+			}
+			if (!temp.renameTo(file)) {
+				// e.g. on windows, move the old snapshot away first and restore it on failure
+				File old = new File(parent, file.getName() + ".old");
+				old.delete();
+				if (!file.renameTo(old)) {
+					throw new IOException("Cannot replace snapshot file: " + file);
+				}
+				if (!temp.renameTo(file)) {
+					old.renameTo(file);
+					throw new IOException("Cannot replace snapshot file: " + file);
+				}
+				old.delete();
+			}
+		} finally {
+			temp.delete();
+		}
+		return count;
+	}
+
+	/**
+	 * Save a snapshot when the virtual machine exits. A single shutdown hook is shared by all
+	 * persistent caches. It saves the most recently registered cache for each snapshot file,
+	 * unless that cache has been garbage collected or closed (see {@link #close()}) before.
+	 * Errors are logged.
+	 */
+	public void saveOnShutdown() {
+		synchronized (shutdownCaches) {
+			shutdownCaches.put(file.getAbsoluteFile(), new WeakReference<PersistentCache>(this));
+			if (shutdownHook == null) {
+				Thread hook = new Thread("juel-cache-snapshot") {
+					@Override
+					public void run() {
+						List<PersistentCache> caches = new ArrayList<PersistentCache>();
+						synchronized (shutdownCaches) {
+							for (WeakReference<PersistentCache> reference : shutdownCaches.values()) {
+								if (reference.get() != null) {
+									caches.add(reference.get());
+								}
+							}
+						}
+						for (PersistentCache cache : caches) {
+							try {
+								cache.save();
+							} catch (IOException e) {
+								LOG.log(Level.WARNING, "Cannot save snapshot file " + cache.getFile(), e);
+							}
+						}
+					}
+				};
+				try {
+					Runtime.getRuntime().addShutdownHook(hook);
+					shutdownHook = hook;
+				} catch (SecurityException e) {
+					LOG.log(Level.WARNING, "Cannot register shutdown hook to save snapshot file " + file, e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Save a snapshot and cancel saving this cache on shutdown. The shared shutdown hook is
+	 * removed when no more caches are registered, so that e.g. an undeployed web application
+	 * can be unloaded.
+	 * @throws IOException if the snapshot cannot be written
+	 */
+	public void close() throws IOException {
+		synchronized (shutdownCaches) {
+			WeakReference<PersistentCache> reference = shutdownCaches.get(file.getAbsoluteFile());
+			if (reference != null && (reference.get() == this || reference.get() == null)) {
+				shutdownCaches.remove(file.getAbsoluteFile());
+			}
+			if (shutdownCaches.isEmpty() && shutdownHook != null) {
+				try {
+					Runtime.getRuntime().removeShutdownHook(shutdownHook);
+				} catch (IllegalStateException e) {
+					// shutdown in progress...
+				}
+				shutdownHook = null;
+			}
+		}
+		save();
+	}
+}
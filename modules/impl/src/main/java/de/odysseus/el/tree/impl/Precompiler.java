@@ -0,0 +1,302 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.TreeBuilderException;
+import de.odysseus.el.tree.impl.Builder.Feature;
+
+/**
+ * Expression precompiler. Scans resource files for <code>${...}</code> and <code>#{...}</code>
+ * expressions, parses them and reports syntax errors. The parsed trees can be written to a
+ * tree bundle (see {@link TreeBundle}), which is preloaded by the expression factory if property
+ * <code>javax.el.treeBundle</code> is set.
+ *
+ * Note that only the <code>${...}</code>/<code>#{...}</code> parts of a file are extracted. The
+ * runtime will still parse composite expressions like <code>Hello, ${name}!</code>.
+ *
+ * @author Christoph Beck
+ */
+public class Precompiler {
+	/**
+	 * Default file extensions to be scanned.
+	 */
+	public static final String[] DEFAULT_EXTENSIONS = {
+		"jsp", "jspf", "jspx", "xhtml", "html", "htm", "xml", "properties", "txt"
+	};
+
+	/**
+	 * Expression found in a resource.
+	 */
+	public static final class Occurrence {
+		private final String expression;
+		private final int line;
+
+		Occurrence(String expression, int line) {
+			this.expression = expression;
+			this.line = line;
+		}
+
+		public String getExpression() {
+			return expression;
+		}
+
+		/**
+		 * @return line number (starting with 1)
+		 */
+		public int getLine() {
+			return line;
+		}
+	}
+
+	private final Builder builder;
+	private final PrintWriter errors;
+	private final Set<String> extensions = new HashSet<String>();
+	private final Map<String, Tree> trees = new LinkedHashMap<String, Tree>();
+	private int errorCount;
+
+	/**
+	 * Create a precompiler.
+	 * @param builder builder used to parse expressions
+	 * @param errors syntax errors are reported here
+	 */
+	public Precompiler(Builder builder, PrintWriter errors) {
+		this(builder, errors, DEFAULT_EXTENSIONS);
+	}
+
+	/**
+	 * Create a precompiler.
+	 * @param builder builder used to parse expressions
+	 * @param errors syntax errors are reported here
+	 * @param extensions file extensions to be scanned when scanning directories
+	 */
+	public Precompiler(Builder builder, PrintWriter errors, String... extensions) {
+		this.builder = builder;
+		this.errors = errors;
+		this.extensions.addAll(Arrays.asList(extensions));
+	}
+
+	/**
+	 * Extract <code>${...}</code> and <code>#{...}</code> expressions from the given text.
+	 * Braces within string literals are skipped, escaped expressions (<code>\${...}</code>) are
+	 * ignored.
+	 */
+	public static List<Occurrence> extract(CharSequence text) {
+		List<Occurrence> result = new ArrayList<Occurrence>();
+		int line = 1;
+		int length = text.length();
+		int i = 0;
+		while (i < length) {
+			char c = text.charAt(i);
+			if (c == '\n') {
+				line++;
+			} else if (c == '\\' && i + 1 < length && (text.charAt(i + 1) == '$' || text.charAt(i + 1) == '#')) {
+				i++;
+			} else if ((c == '$' || c == '#') && i + 1 < length && text.charAt(i + 1) == '{') {
+				int start = i;
+				int startLine = line;
+				char quote = 0;
+				for (i += 2; i < length; i++) {
+					c = text.charAt(i);
+					if (c == '\n') {
+						line++;
+					}
+					if (quote != 0) {
+						if (c == '\\') {
+							i++;
+						} else if (c == quote) {
+							quote = 0;
+						}
+					} else if (c == '\'' || c == '"') {
+						quote = c;
+					} else if (c == '}') {
+						break;
+					}
+				}
+				if (i < length) {
+					result.add(new Occurrence(text.subSequence(start, i + 1).toString(), startLine));
+				} else {
+					result.add(new Occurrence(text.subSequence(start, length).toString(), startLine));
+				}
+			}
+			i++;
+		}
+		return result;
+	}
+
+	/**
+	 * Parse expressions contained in the given text.
+	 * @param source resource name used in error messages
+	 * @param text resource content
+	 * @return number of syntax errors
+	 */
+	public int scan(String source, CharSequence text) {
+		int count = 0;
+		for (Occurrence occurrence : extract(text)) {
+			String expression = occurrence.getExpression();
+			if (!trees.containsKey(expression)) {
+				try {
+					trees.put(expression, builder.build(expression));
+				} catch (TreeBuilderException e) {
+					errors.println(source + ":" + occurrence.getLine() + ": " + e.getMessage());
+					count++;
+				}
+			}
+		}
+		errorCount += count;
+		return count;
+	}
+
+	/**
+	 * Scan a file or directory (recursively). Files in sub-directories are scanned if their
+	 * extension matches one of the configured extensions. Files are read as UTF-8.
+	 * @return number of syntax errors
+	 */
+	public int scan(File file) throws IOException {
+		int count = 0;
+		if (file.isDirectory()) {
+			File[] files = file.listFiles();
+			if (files != null) {
+				Arrays.sort(files);
+				for (File child : files) {
+					if (child.isDirectory() || extensions.contains(extension(child))) {
+						count += scan(child);
+					}
+				}
+			}
+		} else {
+			StringBuilder text = new StringBuilder((int)file.length());
+			Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+			try {
+				char[] buffer = new char[4096];
+				int n;
+				while ((n = reader.read(buffer)) > 0) {
+					text.append(buffer, 0, n);
+				}
+			} finally {
+				reader.close();
+			}
+			count = scan(file.getPath(), text);
+		}
+		return count;
+	}
+
+	private static String extension(File file) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot < 0 ? "" : name.substring(dot + 1);
+	}
+
+	/**
+	 * @return parsed trees by expression string
+	 */
+	public Map<String, Tree> getTrees() {
+		return trees;
+	}
+
+	/**
+	 * @return total number of syntax errors
+	 */
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * Write a tree bundle containing the parsed trees.
+	 * @return number of written trees
+	 */
+	public int write(OutputStream output) throws IOException {
+		return TreeBundle.write(builder, trees, output);
+	}
+
+	private static void usage() {
+		System.err.println("usage: java " + Precompiler.class.getName()
+				+ " [-o <bundle file>] [-f <feature>,...] [-e <extension>,...] <file or directory>...");
+		System.err.println("features: " + Arrays.toString(Feature.values()) + " (default: METHOD_INVOCATIONS,VARARGS)");
+		System.exit(1);
+	}
+
+	/**
+	 * Precompile expressions and report syntax errors. Exits with status 1 if errors were found.
+	 * If an output file is given, a tree bundle is written.
+	 *
+	 * @param args command line arguments (see usage)
+	 */
+	public static void main(String[] args) throws IOException {
+		File output = null;
+		EnumSet<Feature> features = EnumSet.of(Feature.METHOD_INVOCATIONS, Feature.VARARGS);
+		String[] extensions = DEFAULT_EXTENSIONS;
+		List<File> files = new ArrayList<File>();
+		for (int i = 0; i < args.length; i++) {
+			if ("-o".equals(args[i]) && i + 1 < args.length) {
+				output = new File(args[++i]);
+			} else if ("-f".equals(args[i]) && i + 1 < args.length) {
+				features = EnumSet.noneOf(Feature.class);
+				for (String feature : args[++i].split(",")) {
+					try {
+						features.add(Feature.valueOf(feature.trim()));
+					} catch (IllegalArgumentException e) {
+						usage();
+					}
+				}
+			} else if ("-e".equals(args[i]) && i + 1 < args.length) {
+				extensions = args[++i].split(",");
+			} else if (args[i].startsWith("-")) {
+				usage();
+			} else {
+				files.add(new File(args[i]));
+			}
+		}
+		if (files.isEmpty()) {
+			usage();
+		}
+
+		PrintWriter errors = new PrintWriter(System.err, true);
+		Precompiler precompiler = new Precompiler(new Builder(features.toArray(new Feature[features.size()])), errors, extensions);
+		for (File file : files) {
+			precompiler.scan(file);
+		}
+		System.out.println(precompiler.getTrees().size() + " expressions, " + precompiler.getErrorCount() + " errors");
+		if (output != null) {
+			OutputStream out = new FileOutputStream(output);
+			try {
+				System.out.println(precompiler.write(out) + " trees written to " + output);
+			} finally {
+				out.close();
+			}
+		}
+		if (precompiler.getErrorCount() > 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -20,7 +20,11 @@ import java.util.HashMap;
 import de.odysseus.el.misc.LocalMessages;
 
 /**
- * Handcrafted scanner.
+ * Handcrafted scanner. The input may be any character sequence (e.g. a <code>String</code>,
+ * <code>StringBuilder</code> or <code>CharBuffer</code>). Token images are created only for
+ * lexemes whose text ends up in the tree (text, strings, numbers and identifiers); text and
+ * string tokens without escape sequences are cut from the input without copying them character
+ * by character.
  *
  * @author Christoph Beck
  */
@@ -166,7 +170,7 @@ public class Scanner {
 
 	private Token token;  // current token
  	private int position; // start position of current token
-	private final String input;
+	private final CharSequence input;
 	
 	protected final StringBuilder builder = new StringBuilder();
 	
@@ -175,11 +179,26 @@ public class Scanner {
 	 * @param input expression string
 	 */
 	protected Scanner(String input) {
+		this((CharSequence)input);
+	}
+
+	/**
+	 * Constructor.
+	 * @param input expression characters
+	 */
+	protected Scanner(CharSequence input) {
 		this.input = input;
 	}
 
 	public String getInput() {
-		return input;
+		return input.toString();
+	}
+
+	/**
+	 * @return input characters from <code>start</code> (inclusive) to <code>end</code> (exclusive)
+	 */
+	protected String substring(int start, int end) {
+		return input.subSequence(start, end).toString();
 	}
 	
 	/**
@@ -231,6 +250,25 @@ public class Scanner {
 	 * text token
 	 */
 	protected Token nextText() throws ScanException {
+		int i = position;
+		int l = input.length();
+		while (i < l) {
+			char c = input.charAt(i);
+			if (c == '\\') {
+				return nextEscapedText();
+			}
+			if ((c == '#' || c == '$') && i+1 < l && input.charAt(i+1) == '{') {
+				break;
+			}
+			i++;
+		}
+		return token(Symbol.TEXT, substring(position, i), i - position);
+	}
+
+	/**
+	 * text token containing backslashes
+	 */
+	private Token nextEscapedText() throws ScanException {
 		builder.setLength(0);
 		int i = position;
 		int l = input.length();
@@ -280,10 +318,20 @@ public class Scanner {
 	 * string token
 	 */
 	protected Token nextString() throws ScanException {
-		builder.setLength(0);
 		char quote = input.charAt(position);
 		int i = position+1;
 		int l = input.length();
+		while (i < l) {
+			char c = input.charAt(i++);
+			if (c == quote) {
+				return token(Symbol.STRING, substring(position+1, i-1), i - position);
+			}
+			if (c == '\\') {
+				break;
+			}
+		}
+		builder.setLength(0);
+		i = position+1;
 		while (i < l) {
 			char c = input.charAt(i++);
 			if (c == '\\') {
@@ -339,7 +387,7 @@ public class Scanner {
 				i = e;
 			}
 		}
-		return token(symbol, input.substring(position, i), i - position);
+		return token(symbol, substring(position, i), i - position);
 	}
 	
 	/**
@@ -411,7 +459,7 @@ public class Scanner {
 			while (i < l && Character.isJavaIdentifierPart(input.charAt(i))) {
 				i++;
 			}
-			String name = input.substring(position, i);
+			String name = substring(position, i);
 			Token keyword = keyword(name);
 			return keyword == null ? token(Symbol.IDENTIFIER, name, i - position) : keyword;
 		}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.odysseus.el.tree.Tree;
+
+/**
+ * Reads and writes tree bundles. A tree bundle holds precompiled trees (see {@link Precompiler})
+ * and has the same layout as the snapshot files used by {@link PersistentCache}: codec header,
+ * entry count and for each entry the expression string, the length of the encoded tree and the
+ * encoded tree.
+ *
+ * @author Christoph Beck
+ */
+public final class TreeBundle {
+	private TreeBundle() {
+	}
+
+	/**
+	 * Write a tree bundle. Trees which cannot be encoded are skipped.
+	 * @param builder the builder used to create the trees
+	 * @param trees trees by expression string
+	 * @param output output stream (not closed)
+	 * @return number of written trees
+	 */
+	public static int write(Builder builder, Map<String, Tree> trees, OutputStream output) throws IOException {
+		TreeCodec codec = new TreeCodec(builder);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(output));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+		int count = 0;
+		for (Tree tree : trees.values()) {
+			if (codec.isEncodable(tree)) {
+				count++;
+			}
+		}
+		codec.writeHeader(out);
+		TreeCodec.writeInt(out, count);
+		for (Map.Entry<String, Tree> entry : trees.entrySet()) {
+			if (codec.isEncodable(entry.getValue())) {
+				bytes.reset();
+				codec.encode(entry.getValue(), new DataOutputStream(bytes));
+				TreeCodec.writeString(out, entry.getKey());
+				TreeCodec.writeInt(out, bytes.size());
+				bytes.writeTo(out);
+			}
+		}
+		out.flush();
+		return count;
+	}
+
+	/**
+	 * Read a tree bundle. All trees are decoded.
+	 * @param builder the builder used to create the trees
+	 * @param input input stream (not closed)
+	 * @return unmodifiable map of trees by expression string
+	 * @throws IOException if the bundle cannot be read or has been written for a builder with
+	 * different features
+	 */
+	public static Map<String, Tree> read(Builder builder, InputStream input) throws IOException {
+		TreeCodec codec = new TreeCodec(builder);
+		DataInputStream in = new DataInputStream(new BufferedInputStream(input));
+		if (!codec.readHeader(in)) {
+			throw new IOException("Incompatible tree bundle (expected signature " + codec.getSignature() + ")");
+		}
+		int count = TreeCodec.readInt(in);
+		Map<String, Tree> trees = new HashMap<String, Tree>(2 * count);
+		for (int i = 0; i < count; i++) {
+			String expression = TreeCodec.readString(in);
+			TreeCodec.readInt(in); // length
+			trees.put(expression, codec.decode(in));
+		}
+		return Collections.unmodifiableMap(trees);
+	}
+}
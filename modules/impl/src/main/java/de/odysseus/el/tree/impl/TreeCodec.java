@@ -0,0 +1,549 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.odysseus.el.tree.FunctionNode;
+import de.odysseus.el.tree.IdentifierNode;
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.impl.Builder.Feature;
+import de.odysseus.el.tree.impl.ast.AstBinary;
+import de.odysseus.el.tree.impl.ast.AstBoolean;
+import de.odysseus.el.tree.impl.ast.AstBracket;
+import de.odysseus.el.tree.impl.ast.AstChoice;
+import de.odysseus.el.tree.impl.ast.AstComposite;
+import de.odysseus.el.tree.impl.ast.AstDot;
+import de.odysseus.el.tree.impl.ast.AstEval;
+import de.odysseus.el.tree.impl.ast.AstFunction;
+import de.odysseus.el.tree.impl.ast.AstIdentifier;
+import de.odysseus.el.tree.impl.ast.AstMethod;
+import de.odysseus.el.tree.impl.ast.AstNested;
+import de.odysseus.el.tree.impl.ast.AstNode;
+import de.odysseus.el.tree.impl.ast.AstNull;
+import de.odysseus.el.tree.impl.ast.AstNumber;
+import de.odysseus.el.tree.impl.ast.AstParameters;
+import de.odysseus.el.tree.impl.ast.AstProperty;
+import de.odysseus.el.tree.impl.ast.AstString;
+import de.odysseus.el.tree.impl.ast.AstText;
+import de.odysseus.el.tree.impl.ast.AstUnary;
+
+/**
+ * Binary tree encoding. Encodes trees built by a {@link Builder} into a compact binary form and
+ * decodes them without parsing the expression again.
+ *
+ * Only the standard node types are supported (exact classes, no subclasses or syntax extensions).
+ * Strings are written once per tree and referenced by index afterwards.
+ *
+ * A codec has a signature, which identifies the encoding version and the builder (class and
+ * features). Data written by a codec must only be read by a codec with the same signature.
+ *
+ * @author Christoph Beck
+ */
+public class TreeCodec {
+	private static final int MAGIC = 0x4A55454C; // "JUEL"
+	private static final int VERSION = 1;
+
+	private static final int TEXT = 1;
+	private static final int EVAL = 2;
+	private static final int NESTED = 3;
+	private static final int NULL = 4;
+	private static final int TRUE = 5;
+	private static final int FALSE = 6;
+	private static final int LONG = 7;
+	private static final int DOUBLE = 8;
+	private static final int BIG_INTEGER = 9;
+	private static final int BIG_DECIMAL = 10;
+	private static final int STRING = 11;
+	private static final int BINARY = 12;
+	private static final int UNARY = 13;
+	private static final int CHOICE = 14;
+	private static final int COMPOSITE = 15;
+	private static final int DOT = 16;
+	private static final int BRACKET = 17;
+	private static final int IDENTIFIER = 18;
+	private static final int FUNCTION = 19;
+	private static final int METHOD = 20;
+	private static final int PARAMETERS = 21;
+
+	private static final AstBinary.Operator[] BINARY_OPERATORS = {
+		AstBinary.ADD, AstBinary.AND, AstBinary.DIV, AstBinary.EQ, AstBinary.GE, AstBinary.GT, AstBinary.LE,
+		AstBinary.LT, AstBinary.MOD, AstBinary.MUL, AstBinary.NE, AstBinary.OR, AstBinary.SUB
+	};
+	private static final AstUnary.Operator[] UNARY_OPERATORS = {
+		AstUnary.EMPTY, AstUnary.NEG, AstUnary.NOT
+	};
+
+	/**
+	 * Writes the nodes of a single tree.
+	 */
+	private static final class Encoder {
+		private final DataOutput out;
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+		Encoder(DataOutput out) {
+			this.out = out;
+		}
+
+		void string(String value) throws IOException {
+			Integer index = strings.get(value);
+			if (index == null) {
+				strings.put(value, strings.size());
+				writeInt(out, 0);
+				writeString(out, value);
+			} else {
+				writeInt(out, index.intValue() + 1);
+			}
+		}
+
+		void children(AstNode node) throws IOException {
+			for (int i = 0; i < node.getCardinality(); i++) {
+				node((AstNode)node.getChild(i));
+			}
+		}
+
+		void node(AstNode node) throws IOException {
+			Class<?> type = node.getClass();
+			if (type == AstText.class) {
+				out.writeByte(TEXT);
+				string((String)node.eval(null, null));
+			} else if (type == AstEval.class) {
+				out.writeByte(EVAL);
+				out.writeBoolean(((AstEval)node).isDeferred());
+				children(node);
+			} else if (type == AstNested.class) {
+				out.writeByte(NESTED);
+				children(node);
+			} else if (type == AstNull.class) {
+				out.writeByte(NULL);
+			} else if (type == AstBoolean.class) {
+				out.writeByte(Boolean.TRUE.equals(node.eval(null, null)) ? TRUE : FALSE);
+			} else if (type == AstNumber.class) {
+				number((Number)node.eval(null, null));
+			} else if (type == AstString.class) {
+				out.writeByte(STRING);
+				string((String)node.eval(null, null));
+			} else if (type == AstBinary.class) {
+				out.writeByte(BINARY);
+				out.writeByte(index(BINARY_OPERATORS, ((AstBinary)node).getOperator()));
+				children(node);
+			} else if (type == AstUnary.class) {
+				out.writeByte(UNARY);
+				out.writeByte(index(UNARY_OPERATORS, ((AstUnary)node).getOperator()));
+				children(node);
+			} else if (type == AstChoice.class) {
+				out.writeByte(CHOICE);
+				children(node);
+			} else if (type == AstComposite.class || type == AstParameters.class) {
+				out.writeByte(type == AstComposite.class ? COMPOSITE : PARAMETERS);
+				writeInt(out, node.getCardinality());
+				children(node);
+			} else if (type == AstDot.class) {
+				AstDot dot = (AstDot)node;
+				out.writeByte(DOT);
+				out.writeBoolean(dot.isLeftValue());
+				out.writeBoolean(dot.isIgnoreReturnType());
+				string(dot.getPropertyName());
+				children(node);
+			} else if (type == AstBracket.class) {
+				AstBracket bracket = (AstBracket)node;
+				out.writeByte(BRACKET);
+				out.writeBoolean(bracket.isLeftValue());
+				out.writeBoolean(bracket.isStrict());
+				out.writeBoolean(bracket.isIgnoreReturnType());
+				children(node);
+			} else if (type == AstIdentifier.class) {
+				AstIdentifier identifier = (AstIdentifier)node;
+				out.writeByte(IDENTIFIER);
+				writeInt(out, identifier.getIndex());
+				out.writeBoolean(identifier.isIgnoreReturnType());
+				string(identifier.getName());
+			} else if (type == AstFunction.class) {
+				AstFunction function = (AstFunction)node;
+				out.writeByte(FUNCTION);
+				writeInt(out, function.getIndex());
+				out.writeBoolean(function.isVarArgs());
+				string(function.getName());
+				children(node);
+			} else if (type == AstMethod.class) {
+				out.writeByte(METHOD);
+				children(node);
+			} else {
+				throw new IllegalArgumentException("Cannot encode node of type " + type.getName());
+			}
+		}
+
+		void number(Number value) throws IOException {
+			Class<?> type = value.getClass();
+			if (type == Long.class) {
+				out.writeByte(LONG);
+				out.writeLong(value.longValue());
+			} else if (type == Double.class) {
+				out.writeByte(DOUBLE);
+				out.writeDouble(value.doubleValue());
+			} else if (type == BigInteger.class) {
+				out.writeByte(BIG_INTEGER);
+				string(value.toString());
+			} else if (type == BigDecimal.class) {
+				out.writeByte(BIG_DECIMAL);
+				string(value.toString());
+			} else {
+				throw new IllegalArgumentException("Cannot encode number of type " + type.getName());
+			}
+		}
+
+		private static int index(Object[] values, Object value) {
+			for (int i = 0; i < values.length; i++) {
+				if (values[i] == value) {
+					return i;
+				}
+			}
+			throw new IllegalArgumentException("Cannot encode operator " + value);
+		}
+	}
+
+	/**
+	 * Reads the nodes of a single tree.
+	 */
+	private static final class Decoder {
+		private final DataInput in;
+		private final List<String> strings = new ArrayList<String>();
+		private final FunctionNode[] functions;
+		private final IdentifierNode[] identifiers;
+
+		Decoder(DataInput in, int functions, int identifiers) {
+			this.in = in;
+			this.functions = new FunctionNode[functions];
+			this.identifiers = new IdentifierNode[identifiers];
+		}
+
+		String string() throws IOException {
+			int index = readInt(in);
+			if (index > 0) {
+				if (index > strings.size()) {
+					throw new IOException("Bad string reference: " + index);
+				}
+				return strings.get(index - 1);
+			}
+			String value = readString(in);
+			strings.add(value);
+
+			return value;
+		}
+
+		List<AstNode> nodes(int count) throws IOException {
+			List<AstNode> nodes = new ArrayList<AstNode>(count);
+			for (int i = 0; i < count; i++) {
+				nodes.add(node());
+			}
+			return nodes;
+		}
+
+		AstParameters params() throws IOException {
+			AstNode node = node();
+			if (!(node instanceof AstParameters)) {
+				throw new IOException("Parameters expected");
+			}
+			return (AstParameters)node;
+		}
+
+		<T> void register(T[] nodes, int index, T node) throws IOException {
+			if (index < 0 || index >= nodes.length || nodes[index] != null) {
+				throw new IOException("Bad node index: " + index);
+			}
+			nodes[index] = node;
+		}
+
+		AstNode node() throws IOException {
+			int tag = in.readByte();
+			switch (tag) {
+				case TEXT:
+					return new AstText(string());
+				case EVAL:
+					boolean deferred = in.readBoolean();
+					return new AstEval(node(), deferred);
+				case NESTED:
+					return new AstNested(node());
+				case NULL:
+					return new AstNull();
+				case TRUE:
+				case FALSE:
+					return new AstBoolean(tag == TRUE);
+				case LONG:
+					return new AstNumber(Long.valueOf(in.readLong()));
+				case DOUBLE:
+					return new AstNumber(Double.valueOf(in.readDouble()));
+				case BIG_INTEGER:
+					return new AstNumber(new BigInteger(string()));
+				case BIG_DECIMAL:
+					return new AstNumber(new BigDecimal(string()));
+				case STRING:
+					return new AstString(string());
+				case BINARY: {
+					AstBinary.Operator operator = BINARY_OPERATORS[in.readUnsignedByte() % BINARY_OPERATORS.length];
+					AstNode left = node();
+					return new AstBinary(left, node(), operator);
+				}
+				case UNARY: {
+					AstUnary.Operator operator = UNARY_OPERATORS[in.readUnsignedByte() % UNARY_OPERATORS.length];
+					return new AstUnary(node(), operator);
+				}
+				case CHOICE: {
+					AstNode question = node();
+					AstNode yes = node();
+					return new AstChoice(question, yes, node());
+				}
+				case COMPOSITE:
+					return new AstComposite(nodes(readInt(in)));
+				case PARAMETERS:
+					return new AstParameters(nodes(readInt(in)));
+				case DOT: {
+					boolean lvalue = in.readBoolean();
+					boolean ignoreReturnType = in.readBoolean();
+					String property = string();
+					return new AstDot(node(), property, lvalue, ignoreReturnType);
+				}
+				case BRACKET: {
+					boolean lvalue = in.readBoolean();
+					boolean strict = in.readBoolean();
+					boolean ignoreReturnType = in.readBoolean();
+					AstNode base = node();
+					return new AstBracket(base, node(), lvalue, strict, ignoreReturnType);
+				}
+				case IDENTIFIER: {
+					int index = readInt(in);
+					boolean ignoreReturnType = in.readBoolean();
+					AstIdentifier identifier = new AstIdentifier(string(), index, ignoreReturnType);
+					register(identifiers, index, identifier);
+					return identifier;
+				}
+				case FUNCTION: {
+					int index = readInt(in);
+					boolean varargs = in.readBoolean();
+					String name = string();
+					AstFunction function = new AstFunction(name, index, params(), varargs);
+					register(functions, index, function);
+					return function;
+				}
+				case METHOD: {
+					AstNode property = node();
+					if (!(property instanceof AstProperty)) {
+						throw new IOException("Property expected");
+					}
+					return new AstMethod((AstProperty)property, params());
+				}
+				default:
+					throw new IOException("Bad node tag: " + tag);
+			}
+		}
+
+		<T> List<T> list(T[] nodes) throws IOException {
+			if (nodes.length == 0) {
+				return Collections.emptyList();
+			}
+			List<T> list = new ArrayList<T>(nodes.length);
+			for (T node : nodes) {
+				if (node == null) {
+					throw new IOException("Missing node");
+				}
+				list.add(node);
+			}
+			return list;
+		}
+	}
+
+	/**
+	 * Write a non-negative integer using a variable length encoding (7 bits per byte).
+	 */
+	static void writeInt(DataOutput out, int value) throws IOException {
+		while ((value & ~0x7F) != 0) {
+			out.writeByte((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	/**
+	 * Read a non-negative integer written by {@link #writeInt(DataOutput, int)}.
+	 */
+	static int readInt(DataInput in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.readUnsignedByte();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0) {
+				if (value < 0) {
+					throw new IOException("Bad integer");
+				}
+				return value;
+			}
+		}
+		throw new IOException("Bad integer");
+	}
+
+	/**
+	 * Write a string (UTF-8, length prefixed).
+	 */
+	static void writeString(DataOutput out, String value) throws IOException {
+		byte[] bytes = value.getBytes("UTF-8");
+		writeInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Read a string written by {@link #writeString(DataOutput, String)}.
+	 */
+	static String readString(DataInput in) throws IOException {
+		byte[] bytes = new byte[readInt(in)];
+		in.readFully(bytes);
+		try {
+			return new String(bytes, "UTF-8");
+		} catch (UnsupportedEncodingException e) {
+			throw new IOException(e.getMessage());
+		}
+	}
+
+	private final Builder builder;
+	private final String signature;
+
+	/**
+	 * Create a codec for trees built by the given builder.
+	 * @param builder tree builder
+	 */
+	public TreeCodec(Builder builder) {
+		this.builder = builder;
+		StringBuilder signature = new StringBuilder();
+		signature.append(VERSION).append(':').append(builder.getClass().getName());
+		for (Feature feature : Feature.values()) {
+			// compilation happens after decoding and does not affect the encoded trees
+			if (feature != Feature.COMPILE && builder.isEnabled(feature)) {
+				signature.append(':').append(feature);
+			}
+		}
+		this.signature = signature.toString();
+	}
+
+	/**
+	 * @return codec signature (encoding version, builder class and features affecting the trees)
+	 */
+	public String getSignature() {
+		return signature;
+	}
+
+	/**
+	 * Write magic number and signature.
+	 */
+	public void writeHeader(DataOutput out) throws IOException {
+		out.writeInt(MAGIC);
+		writeString(out, signature);
+	}
+
+	/**
+	 * Read magic number and signature.
+	 * @return <code>true</code> if the data has been written by a compatible codec
+	 */
+	public boolean readHeader(DataInput in) throws IOException {
+		return in.readInt() == MAGIC && signature.equals(readString(in));
+	}
+
+	/**
+	 * Answer <code>true</code> if the given tree can be encoded.
+	 */
+	public boolean isEncodable(Tree tree) {
+		return isEncodable(Compiler.unwrap((AstNode)tree.getRoot()));
+	}
+
+	private boolean isEncodable(AstNode node) {
+		Class<?> type = node.getClass();
+		if (type == AstNumber.class) {
+			Class<?> numberType = node.eval(null, null).getClass();
+			return numberType == Long.class || numberType == Double.class
+					|| numberType == BigInteger.class || numberType == BigDecimal.class;
+		}
+		if (type == AstBinary.class || type == AstUnary.class) {
+			Object operator = type == AstBinary.class ? ((AstBinary)node).getOperator() : ((AstUnary)node).getOperator();
+			Object[] operators = type == AstBinary.class ? BINARY_OPERATORS : UNARY_OPERATORS;
+			boolean found = false;
+			for (Object value : operators) {
+				found |= value == operator;
+			}
+			if (!found) {
+				return false;
+			}
+		} else if (type != AstText.class && type != AstEval.class && type != AstNested.class
+				&& type != AstNull.class && type != AstBoolean.class && type != AstString.class
+				&& type != AstChoice.class && type != AstComposite.class && type != AstParameters.class
+				&& type != AstDot.class && type != AstBracket.class && type != AstIdentifier.class
+				&& type != AstFunction.class && type != AstMethod.class) {
+			return false;
+		}
+		for (int i = 0; i < node.getCardinality(); i++) {
+			if (!isEncodable((AstNode)node.getChild(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Encode a tree.
+	 * @throws IllegalArgumentException if the tree cannot be encoded
+	 * @see #isEncodable(Tree)
+	 */
+	public void encode(Tree tree, DataOutput out) throws IOException {
+		int functions = 0;
+		for (FunctionNode node : tree.getFunctionNodes()) {
+			functions++;
+		}
+		int identifiers = 0;
+		for (IdentifierNode node : tree.getIdentifierNodes()) {
+			identifiers++;
+		}
+		out.writeBoolean(tree.isDeferred());
+		writeInt(out, functions);
+		writeInt(out, identifiers);
+		new Encoder(out).node(Compiler.unwrap((AstNode)tree.getRoot()));
+	}
+
+	/**
+	 * Decode a tree.
+	 * @throws IOException if the data is corrupt
+	 */
+	public Tree decode(DataInput in) throws IOException {
+		boolean deferred = in.readBoolean();
+		Decoder decoder = new Decoder(in, readInt(in), readInt(in));
+		AstNode root;
+		try {
+			root = decoder.node();
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupt tree data: " + e);
+		}
+		if (builder.isEnabled(Feature.COMPILE)) {
+			root = builder.getCompiler().compile(root);
+		}
+		return new Tree(root, decoder.list(decoder.functions), decoder.list(decoder.identifiers), deferred);
+	}
+}
@@ -124,6 +124,16 @@ public class AstBinary extends AstRightValue {
 		right.appendStructure(b, bindings);
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		if (getClass() != AstBinary.class) { // subclass may override appendStructure()
+			return super.appendStructureHash(h, bindings);
+		}
+		h = left.appendStructureHash(h, bindings);
+		h = 31 * hash(31 * h + ' ', operator.toString()) + ' ';
+		return right.appendStructureHash(h, bindings);
+	}
+
 	public int getCardinality() {
 		return 2;
 	}
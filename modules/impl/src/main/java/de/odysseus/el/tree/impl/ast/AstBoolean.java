@@ -40,4 +40,9 @@ public final class AstBoolean extends AstLiteral {
 	public void appendStructure(StringBuilder b, Bindings bindings) {
 		b.append(value);
 	}
+
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		return hash(h, value ? "true" : "false");
+	}
 }
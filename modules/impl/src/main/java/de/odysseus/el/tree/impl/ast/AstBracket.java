@@ -50,6 +50,16 @@ public class AstBracket extends AstProperty {
 		b.append("]");
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		if (getClass() != AstBracket.class) { // subclass may override appendStructure()
+			return super.appendStructureHash(h, bindings);
+		}
+		h = getChild(0).appendStructureHash(h, bindings);
+		h = getChild(1).appendStructureHash(31 * h + '[', bindings);
+		return 31 * h + ']';
+	}
+
 	public int getCardinality() {
 		return 2;
 	}
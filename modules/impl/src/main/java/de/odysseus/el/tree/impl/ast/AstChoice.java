@@ -49,6 +49,16 @@ public class AstChoice extends AstRightValue {
 		no.appendStructure(b, bindings);
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		if (getClass() != AstChoice.class) { // subclass may override appendStructure()
+			return super.appendStructureHash(h, bindings);
+		}
+		h = hash(question.appendStructureHash(h, bindings), " ? ");
+		h = hash(yes.appendStructureHash(h, bindings), " : ");
+		return no.appendStructureHash(h, bindings);
+	}
+
 	public int getCardinality() {
 		return 3;
 	}
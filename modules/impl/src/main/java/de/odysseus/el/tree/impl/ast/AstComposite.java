@@ -15,6 +15,7 @@
  */
 package de.odysseus.el.tree.impl.ast;
 
+import java.io.IOException;
 import java.util.List;
 
 import javax.el.ELContext;
@@ -22,21 +23,57 @@ import javax.el.ELContext;
 import de.odysseus.el.tree.Bindings;
 
 public class AstComposite extends AstRightValue {
+	/**
+	 * Estimated length of an evaluated (non-text) part.
+	 */
+	private static final int VALUE_LENGTH = 16;
+
 	private final List<AstNode> nodes;
 
+	/**
+	 * Expected result length, taken from recent evaluations. Updates may get lost if the node
+	 * is evaluated concurrently, which does no harm.
+	 */
+	private int sizeHint;
+
 	public AstComposite(List<AstNode> nodes) {
 		this.nodes = nodes;
+		int size = 0;
+		for (AstNode node : nodes) {
+			size += node instanceof AstText ? ((String)node.eval(null, null)).length() : VALUE_LENGTH;
+		}
+		this.sizeHint = size;
 	}
 
 	@Override 
 	public Object eval(Bindings bindings, ELContext context) {
-		StringBuilder b = new StringBuilder(16);
+		int hint = sizeHint;
+		StringBuilder b = new StringBuilder(hint + VALUE_LENGTH);
+		boolean convertText = !bindings.isDefaultConverter();
 		for (int i = 0; i < getCardinality(); i++) {
-			b.append(bindings.convert(nodes.get(i).eval(bindings, context), String.class));
+			AstNode node = nodes.get(i);
+			if (node instanceof AstText && !convertText) {
+				b.append((String)node.eval(bindings, context));
+			} else {
+				b.append(bindings.convert(node.eval(bindings, context), String.class));
+			}
+		}
+		int length = b.length();
+		if (length > hint) {
+			sizeHint = length;
+		} else if (length < hint) { // shrink slowly
+			sizeHint = hint - ((hint - length) >> 3);
 		}
 		return b.toString();
 	}
 
+	@Override
+	public void appendValue(Appendable out, Bindings bindings, ELContext context) throws IOException {
+		for (int i = 0; i < getCardinality(); i++) {
+			nodes.get(i).appendValue(out, bindings, context);
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "composite";
@@ -49,6 +86,17 @@ public class AstComposite extends AstRightValue {
 		}
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		if (getClass() != AstComposite.class) { // subclass may override appendStructure()
+			return super.appendStructureHash(h, bindings);
+		}
+		for (int i = 0; i < getCardinality(); i++) {
+			h = nodes.get(i).appendStructureHash(h, bindings);
+		}
+		return h;
+	}
+
 	public int getCardinality() {
 		return nodes.size();
 	}
@@ -15,6 +15,9 @@
  */
 package de.odysseus.el.tree.impl.ast;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
 import javax.el.ELContext;
 import javax.el.ELException;
 
@@ -22,6 +25,7 @@ import de.odysseus.el.tree.Bindings;
 
 public class AstDot extends AstProperty {
 	protected final String property;
+	private final PropertyCache cache;
 
 	public AstDot(AstNode base, String property, boolean lvalue) {
 		this(base, property, lvalue, false);
@@ -30,6 +34,7 @@ public class AstDot extends AstProperty {
 	public AstDot(AstNode base, String property, boolean lvalue, boolean ignoreReturnType) {
 		super(base, lvalue, true, ignoreReturnType);
 		this.property = property;
+		this.cache = new PropertyCache(this, property);
 	}
 
 	@Override
@@ -37,6 +42,36 @@ public class AstDot extends AstProperty {
 		return property;
 	}
 
+	/**
+	 * @return property name
+	 */
+	public String getPropertyName() {
+		return property;
+	}
+
+	/**
+	 * Evaluate the property for the given (non-<code>null</code>) base object. If the context's
+	 * resolver is known to resolve the base object as a bean, the property's read method is
+	 * taken from an inline cache and invoked directly.
+	 */
+	@Override
+	public Object eval(Bindings bindings, ELContext context, Object base) {
+		Method method = cache.get(context.getELResolver(), base.getClass());
+		if (method == null) {
+			return super.eval(bindings, context, base);
+		}
+		Object result;
+		try {
+			result = method.invoke(base);
+		} catch (InvocationTargetException e) {
+			throw new ELException(e.getCause());
+		} catch (Exception e) {
+			throw new ELException(e);
+		}
+		context.setPropertyResolved(true);
+		return result;
+	}
+
 	@Override
 	public String toString() {
 		return ". " + property;
@@ -49,6 +84,15 @@ public class AstDot extends AstProperty {
 		b.append(property);
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		if (getClass() != AstDot.class) { // subclass may override appendStructure()
+			return super.appendStructureHash(h, bindings);
+		}
+		h = getChild(0).appendStructureHash(h, bindings);
+		return hash(31 * h + '.', property);
+	}
+
 	public int getCardinality() {
 		return 1;
 	}
@@ -63,6 +63,12 @@ public final class AstEval extends AstNode {
 		b.append("}");
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		h = child.appendStructureHash(hash(h, deferred ? "#{" : "${"), bindings);
+		return 31 * h + '}';
+	}
+
 	public MethodInfo getMethodInfo(Bindings bindings, ELContext context, Class<?> returnType, Class<?>[] paramTypes) {
 		return child.getMethodInfo(bindings, context, returnType, paramTypes);
 	}
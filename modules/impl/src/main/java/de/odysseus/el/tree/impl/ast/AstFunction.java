@@ -27,11 +27,90 @@ import de.odysseus.el.tree.Bindings;
 import de.odysseus.el.tree.FunctionNode;
 
 public class AstFunction extends AstRightValue implements FunctionNode {
+	/**
+	 * Invocation plan for a function method. Parameter types and the varargs shape are
+	 * determined once per method, rather than on each call.
+	 */
+	private static final class Plan {
+		final Method method;
+		final Class<?>[] types;
+		final boolean[] primitive;
+		final int varargIndex; // -1 if method is not invoked as varargs method
+		final Class<?> varargType;
+
+		Plan(Method method, boolean varargs) {
+			this.method = method;
+			this.types = method.getParameterTypes();
+			this.primitive = new boolean[types.length];
+			for (int i = 0; i < types.length; i++) {
+				primitive[i] = types[i].isPrimitive();
+			}
+			this.varargIndex = varargs && types.length > 0 ? types.length - 1 : -1;
+			this.varargType = varargIndex < 0 ? null : types[varargIndex].getComponentType();
+		}
+
+		Object[] params(AstFunction function, Bindings bindings, ELContext context) {
+			if (types.length == 0) {
+				return null;
+			}
+			Object[] params = new Object[types.length];
+			int count = varargIndex < 0 ? types.length : varargIndex;
+			for (int i = 0; i < count; i++) {
+				Object param = function.getParam(i).eval(bindings, context);
+				if (param != null || primitive[i]) {
+					params[i] = bindings.convert(param, types[i]);
+				}
+			}
+			if (varargIndex >= 0) {
+				params[varargIndex] = varargs(function, bindings, context);
+			}
+			return params;
+		}
+
+		private Object varargs(AstFunction function, Bindings bindings, ELContext context) {
+			int length = function.getParamCount() - varargIndex;
+			if (length == 1) { // special: eventually use argument as is
+				Object param = function.getParam(varargIndex).eval(bindings, context);
+				if (param != null && param.getClass().isArray()) {
+					if (types[varargIndex].isInstance(param)) {
+						return param;
+					}
+					// coerce array elements
+					length = Array.getLength(param);
+					Object array = Array.newInstance(varargType, length);
+					for (int i = 0; i < length; i++) {
+						set(array, i, Array.get(param, i), bindings);
+					}
+					return array;
+				}
+				// single element array
+				Object array = Array.newInstance(varargType, 1);
+				set(array, 0, param, bindings);
+				return array;
+			}
+			Object array = Array.newInstance(varargType, length);
+			for (int i = 0; i < length; i++) {
+				set(array, i, function.getParam(varargIndex + i).eval(bindings, context), bindings);
+			}
+			return array;
+		}
+
+		private void set(Object array, int index, Object value, Bindings bindings) {
+			if (varargType.isPrimitive()) {
+				Array.set(array, index, bindings.convert(value, varargType));
+			} else if (value != null) {
+				((Object[])array)[index] = bindings.convert(value, varargType);
+			}
+		}
+	}
+
 	private final int index;
 	private final String name;
 	private final AstParameters params;
 	private final boolean varargs;
 
+	private volatile Plan plan;
+
 	public AstFunction(String name, int index, AstParameters params) {
 		this(name, index, params, false);
 	}
@@ -55,62 +134,11 @@ public class AstFunction extends AstRightValue implements FunctionNode {
 	 */
 	protected Object invoke(Bindings bindings, ELContext context, Object base, Method method)
 		throws InvocationTargetException, IllegalAccessException {
-		Class<?>[] types = method.getParameterTypes();
-		Object[] params = null;
-		if (types.length > 0) {
-			params = new Object[types.length];
-			if (varargs && method.isVarArgs()) {
-				for (int i = 0; i < params.length - 1; i++) {
-					Object param = getParam(i).eval(bindings, context);
-					if (param != null || types[i].isPrimitive()) {
-						params[i] = bindings.convert(param, types[i]);
-					}
-				}
-				int varargIndex = types.length - 1;
-				Class<?> varargType = types[varargIndex].getComponentType();
-				int length = getParamCount() - varargIndex;
-				Object array = null;
-				if (length == 1) { // special: eventually use argument as is
-					Object param = getParam(varargIndex).eval(bindings, context);
-					if (param != null && param.getClass().isArray()) {
-						if (types[varargIndex].isInstance(param)) {
-							array = param;
-						} else { // coerce array elements
-							length = Array.getLength(param);
-							array = Array.newInstance(varargType, length);
-							for (int i = 0; i < length; i++) {
-								Object elem = Array.get(param, i);
-								if (elem != null || varargType.isPrimitive()) {
-									Array.set(array, i, bindings.convert(elem, varargType));
-								}
-							}
-						}
-					} else { // single element array
-						array = Array.newInstance(varargType, 1);
-						if (param != null || varargType.isPrimitive()) {
-							Array.set(array, 0, bindings.convert(param, varargType));
-						}
-					}
-				} else {
-					array = Array.newInstance(varargType, length);
-					for (int i = 0; i < length; i++) {
-						Object param = getParam(varargIndex + i).eval(bindings, context);
-						if (param != null || varargType.isPrimitive()) {
-							Array.set(array, i, bindings.convert(param, varargType));
-						}
-					}
-				}
-				params[varargIndex] = array;
-			} else {
-				for (int i = 0; i < params.length; i++) {
-					Object param = getParam(i).eval(bindings, context);
-					if (param != null || types[i].isPrimitive()) {
-						params[i] = bindings.convert(param, types[i]);
-					}
-				}
-			}
+		Plan plan = this.plan;
+		if (plan == null || plan.method != method) {
+			this.plan = plan = new Plan(method, varargs && method.isVarArgs());
 		}
-		return method.invoke(base, params);
+		return method.invoke(base, plan.params(this, bindings, context));
 	}
 
 	@Override 
@@ -136,6 +164,15 @@ public class AstFunction extends AstRightValue implements FunctionNode {
 		params.appendStructure(b, bindings);
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		if (getClass() != AstFunction.class) { // subclass may override appendStructure()
+			return super.appendStructureHash(h, bindings);
+		}
+		h = hash(h, bindings != null && bindings.isFunctionBound(index) ? "<fn>" : name);
+		return params.appendStructureHash(h, bindings);
+	}
+
 	public int getIndex() {
 		return index;
 	}
@@ -203,6 +203,14 @@ public class AstIdentifier extends AstNode implements IdentifierNode {
 		b.append(bindings != null && bindings.isVariableBound(index) ? "<var>" : name);
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		if (getClass() != AstIdentifier.class) { // subclass may override appendStructure()
+			return super.appendStructureHash(h, bindings);
+		}
+		return hash(h, bindings != null && bindings.isVariableBound(index) ? "<var>" : name);
+	}
+
 	public int getIndex() {
 		return index;
 	}
@@ -211,6 +219,13 @@ public class AstIdentifier extends AstNode implements IdentifierNode {
 		return name;
 	}
 
+	/**
+	 * @return <code>true</code> if method return types are not checked
+	 */
+	public boolean isIgnoreReturnType() {
+		return ignoreReturnType;
+	}
+
 	public int getCardinality() {
 		return 0;
 	}
@@ -73,6 +73,14 @@ public class AstMethod extends AstNode {
 		params.appendStructure(builder, bindings);
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		if (getClass() != AstMethod.class) { // subclass may override appendStructure()
+			return super.appendStructureHash(h, bindings);
+		}
+		return params.appendStructureHash(property.appendStructureHash(h, bindings), bindings);
+	}
+
 	protected Object eval(Bindings bindings, ELContext context, boolean answerNullIfBaseIsNull) {
 		Object base = property.getPrefix().eval(bindings, context);
 		if (base == null) {
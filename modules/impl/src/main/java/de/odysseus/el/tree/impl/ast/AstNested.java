@@ -43,6 +43,11 @@ public final class AstNested extends AstRightValue {
 		b.append(")");
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		return 31 * child.appendStructureHash(31 * h + '(', bindings) + ')';
+	}
+
 	public int getCardinality() {
 		return 1;
 	}
@@ -15,6 +15,7 @@
  */
 package de.odysseus.el.tree.impl.ast;
 
+import java.io.IOException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 
@@ -38,6 +39,15 @@ public abstract class AstNode implements ExpressionNode {
 	public abstract void appendStructure(StringBuilder builder, Bindings bindings);
 
 	public abstract Object eval(Bindings bindings, ELContext context);
+
+	/**
+	 * evaluate and append the result (coerced to <code>String</code>) to the given appendable.
+	 * This implementation appends the coerced result of {@link #eval(Bindings, ELContext)};
+	 * text and composite nodes write their parts directly.
+	 */
+	public void appendValue(Appendable out, Bindings bindings, ELContext context) throws IOException {
+		out.append(bindings.convert(eval(bindings, context), String.class));
+	}
   
 	public final String getStructuralId(Bindings bindings) {
 		StringBuilder builder = new StringBuilder();
@@ -45,6 +55,37 @@ public abstract class AstNode implements ExpressionNode {
 		return builder.toString();
 	}
 
+	/**
+	 * Answer the hash code of the structural id (that is
+	 * <code>getStructuralId(bindings).hashCode()</code>) without building the structural id.
+	 */
+	public final int getStructuralHash(Bindings bindings) {
+		return appendStructureHash(0, bindings);
+	}
+
+	/**
+	 * Continue string hash <code>h</code> as if the structure of this node was appended to the
+	 * hashed string (see {@link String#hashCode()}). The standard nodes mirror
+	 * {@link #appendStructure(StringBuilder, Bindings)}; this implementation builds the structural
+	 * id, so that syntax extensions need not override it. Subclasses of standard nodes use this
+	 * implementation unless they override this method, too.
+	 */
+	public int appendStructureHash(int h, Bindings bindings) {
+		return hash(h, getStructuralId(bindings));
+	}
+
+	/**
+	 * Continue string hash <code>h</code> with the characters of <code>s</code>.
+	 */
+	protected static final int hash(int h, String s) {
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			h = 31 * h + s.charAt(i);
+		}
+		return h;
+	}
+
+
 	/**
 	 * Find accessible method. Searches the inheritance tree of the class declaring
 	 * the method until it finds a method that can be invoked.
@@ -34,4 +34,9 @@ public final class AstNull extends AstLiteral {
 	public void appendStructure(StringBuilder b, Bindings bindings) {
 		b.append("null");
 	}
+
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		return hash(h, "null");
+	}
 }
@@ -26,6 +26,11 @@ public final class AstNumber extends AstLiteral {
 		this.value = value;
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		return hash(h, value.toString());
+	}
+
 	@Override 
 	public Object eval(Bindings bindings, ELContext context) {
 		return value;
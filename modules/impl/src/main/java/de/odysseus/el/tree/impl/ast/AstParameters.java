@@ -54,6 +54,21 @@ public class AstParameters extends AstRightValue {
 		builder.append(")");
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		if (getClass() != AstParameters.class) { // subclass may override appendStructure()
+			return super.appendStructureHash(h, bindings);
+		}
+		h = 31 * h + '(';
+		for (int i = 0; i < nodes.size(); i++) {
+			if (i > 0) {
+				h = hash(h, ", ");
+			}
+			h = nodes.get(i).appendStructureHash(h, bindings);
+		}
+		return 31 * h + ')';
+	}
+
 	public int getCardinality() {
 		return nodes.size();
 	}
@@ -15,8 +15,11 @@
  */ 
 package de.odysseus.el.tree.impl.ast;
 
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Arrays;
 
 import javax.el.ELContext;
 import javax.el.ELException;
@@ -29,11 +32,39 @@ import de.odysseus.el.misc.LocalMessages;
 import de.odysseus.el.tree.Bindings;
 
 public abstract class AstProperty extends AstNode {
+	/**
+	 * Method resolved by {@link AstProperty#findMethod(String, Class, Class, Class[])}. The base
+	 * class is referenced weakly and the method softly, so that a cached tree does not prevent
+	 * classes from being unloaded.
+	 */
+	private static final class ResolvedMethod {
+		final String name;
+		final WeakReference<Class<?>> type;
+		final Class<?>[] paramTypes;
+		final SoftReference<Method> method;
+
+		ResolvedMethod(String name, Class<?> type, Class<?>[] paramTypes, Method method) {
+			this.name = name;
+			this.type = new WeakReference<Class<?>>(type);
+			this.paramTypes = paramTypes == null ? null : paramTypes.clone();
+			this.method = new SoftReference<Method>(method);
+		}
+
+		Method get(String name, Class<?> type, Class<?>[] paramTypes) {
+			if (this.type.get() == type && this.name.equals(name) && Arrays.equals(this.paramTypes, paramTypes)) {
+				return method.get();
+			}
+			return null;
+		}
+	}
+
 	protected final AstNode prefix;
 	protected final boolean lvalue;
 	protected final boolean strict; // allow null as property value?
 	protected final boolean ignoreReturnType;
 
+	private volatile ResolvedMethod resolved;
+
 	public AstProperty(AstNode prefix, boolean lvalue, boolean strict) {
 		this(prefix, lvalue, strict, false);
 	}
@@ -69,6 +100,13 @@ public abstract class AstProperty extends AstNode {
 		if (base == null) {
 			return null;
 		}
+		return eval(bindings, context, base);
+	}
+
+	/**
+	 * Evaluate the property for the given (non-<code>null</code>) base object.
+	 */
+	public Object eval(Bindings bindings, ELContext context, Object base) {
 		Object property = getProperty(bindings, context);
 		if (property == null && strict) {
 			return null;
@@ -88,6 +126,20 @@ public abstract class AstProperty extends AstNode {
 	public final boolean isLeftValue() {
 		return lvalue;
 	}
+
+	/**
+	 * @return <code>true</code> if <code>null</code> properties are not passed to the resolver
+	 */
+	public final boolean isStrict() {
+		return strict;
+	}
+
+	/**
+	 * @return <code>true</code> if method return types are not checked
+	 */
+	public final boolean isIgnoreReturnType() {
+		return ignoreReturnType;
+	}
 	
 	public boolean isMethodInvocation() {
 		return false;
@@ -160,15 +212,19 @@ public abstract class AstProperty extends AstNode {
 	}
 	
 	protected Method findMethod(String name, Class<?> clazz, Class<?> returnType, Class<?>[] paramTypes) {
-		Method method = null;
-		try {
-			method = clazz.getMethod(name, paramTypes);
-		} catch (NoSuchMethodException e) {
-			throw new MethodNotFoundException(LocalMessages.get("error.property.method.notfound", name, clazz));
-		}
-		method = findAccessibleMethod(method);
+		ResolvedMethod resolved = this.resolved;
+		Method method = resolved == null ? null : resolved.get(name, clazz, paramTypes);
 		if (method == null) {
-			throw new MethodNotFoundException(LocalMessages.get("error.property.method.notfound", name, clazz));
+			try {
+				method = clazz.getMethod(name, paramTypes);
+			} catch (NoSuchMethodException e) {
+				throw new MethodNotFoundException(LocalMessages.get("error.property.method.notfound", name, clazz));
+			}
+			method = findAccessibleMethod(method);
+			if (method == null) {
+				throw new MethodNotFoundException(LocalMessages.get("error.property.method.notfound", name, clazz));
+			}
+			this.resolved = new ResolvedMethod(name, clazz, paramTypes, method);
 		}
 		if (!ignoreReturnType && returnType != null && !returnType.isAssignableFrom(method.getReturnType())) {
 			throw new MethodNotFoundException(LocalMessages.get("error.property.method.returntype", method.getReturnType(), name, clazz, returnType));
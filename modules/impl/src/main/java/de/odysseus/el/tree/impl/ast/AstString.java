@@ -26,6 +26,20 @@ public final class AstString extends AstLiteral {
 		this.value = value;
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		h = 31 * h + '\'';
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c == '\\' || c == '\'') {
+				h = 31 * h + '\\';
+			}
+			h = 31 * h + c;
+		}
+		return 31 * h + '\'';
+	}
+
 	@Override 
 	public Object eval(Bindings bindings, ELContext context) {
 		return value;
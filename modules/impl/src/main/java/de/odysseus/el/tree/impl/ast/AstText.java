@@ -15,6 +15,8 @@
  */
 package de.odysseus.el.tree.impl.ast;
 
+import java.io.IOException;
+
 import javax.el.ELContext;
 import javax.el.ELException;
 import javax.el.MethodInfo;
@@ -30,6 +32,22 @@ public final class AstText extends AstNode {
 		this.value = value;
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		int end = value.length() - 1;
+		for (int i = 0; i < end; i++) {
+			char c = value.charAt(i);
+			if ((c == '#' || c == '$') && value.charAt(i + 1) == '{') {
+				h = 31 * h + '\\';
+			}
+			h = 31 * h + c;
+		}
+		if (end >= 0) {
+			h = 31 * h + value.charAt(end);
+		}
+		return h;
+	}
+
 	public boolean isLiteralText() {
 		return true;
 	}
@@ -63,6 +81,11 @@ public final class AstText extends AstNode {
 		return value;
 	}
 
+	@Override
+	public void appendValue(Appendable out, Bindings bindings, ELContext context) throws IOException {
+		out.append(bindings.isDefaultConverter() ? value : bindings.convert(value, String.class));
+	}
+
 	public MethodInfo getMethodInfo(Bindings bindings, ELContext context, Class<?> returnType, Class<?>[] paramTypes) {
 		return null;
 	}
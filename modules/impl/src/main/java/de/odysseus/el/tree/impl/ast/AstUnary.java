@@ -76,6 +76,15 @@ public class AstUnary extends AstRightValue {
 		child.appendStructure(b, bindings);
 	}
 
+	@Override
+	public int appendStructureHash(int h, Bindings bindings) {
+		if (getClass() != AstUnary.class) { // subclass may override appendStructure()
+			return super.appendStructureHash(h, bindings);
+		}
+		h = 31 * hash(h, operator.toString()) + ' ';
+		return child.appendStructureHash(h, bindings);
+	}
+
 	public int getCardinality() {
 		return 1;
 	}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl.ast;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+
+import javax.el.BeanELResolver;
+import javax.el.ELResolver;
+
+import de.odysseus.el.util.SimpleResolver;
+
+/**
+ * Inline cache for bean property reads at a single property node. The cache remembers the read
+ * methods for up to {@link #MAX_TYPES} base classes, together with the resolver instance they
+ * have been verified for. An entry is used only if the context's resolver is that very instance.
+ * Negative results (no bean type, no accessible read method) are remembered as well. Once more
+ * than {@link #MAX_TYPES} base classes have been seen, the site is considered megamorphic and
+ * goes straight to the resolver chain.
+ *
+ * Caching is restricted to resolvers which are known to pass properties of a base class to a
+ * plain {@link BeanELResolver}: the bean resolver itself and a {@link SimpleResolver} (see
+ * {@link SimpleResolver#isBeanType(Class)}). For other resolvers, the resolver chain has to be
+ * walked on each access.
+ *
+ * @author Christoph Beck
+ */
+final class PropertyCache {
+	static final int MAX_TYPES = 4;
+
+	private static final class State {
+		final ELResolver resolver;
+		final Class<?>[] types; // null if megamorphic
+		final Method[] methods; // null entries for negative results
+
+		State(ELResolver resolver, Class<?>[] types, Method[] methods) {
+			this.resolver = resolver;
+			this.types = types;
+			this.methods = methods;
+		}
+
+		int indexOf(Class<?> type) {
+			for (int i = 0; i < types.length; i++) {
+				if (types[i] == type) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+
+	private final AstNode node;
+	private final String property;
+	private volatile State state;
+
+	PropertyCache(AstNode node, String property) {
+		this.node = node;
+		this.property = property;
+	}
+
+	/**
+	 * Answer <code>true</code> if properties of base objects of the given class are always resolved
+	 * by a plain bean resolver.
+	 */
+	static boolean isBeanType(ELResolver resolver, Class<?> type) {
+		if (resolver.getClass() == BeanELResolver.class) {
+			return true;
+		}
+		if (resolver.getClass() == SimpleResolver.class) {
+			return ((SimpleResolver)resolver).isBeanType(type);
+		}
+		return false;
+	}
+
+	/**
+	 * Get the read method for our property.
+	 * @param resolver the context's resolver
+	 * @param type base class
+	 * @return read method or <code>null</code> if the resolver chain has to be used
+	 */
+	Method get(ELResolver resolver, Class<?> type) {
+		State state = this.state;
+		if (state != null && state.resolver == resolver) {
+			if (state.types == null) {
+				return null;
+			}
+			int index = state.indexOf(type);
+			if (index >= 0) {
+				return state.methods[index];
+			}
+		}
+		return update(state, resolver, type);
+	}
+
+	private Method update(State state, ELResolver resolver, Class<?> type) {
+		Method method = isBeanType(resolver, type) ? findReadMethod(type) : null;
+		if (state == null || state.resolver != resolver) {
+			this.state = new State(resolver, new Class<?>[]{ type }, new Method[]{ method });
+		} else if (state.types.length < MAX_TYPES) {
+			int length = state.types.length;
+			Class<?>[] types = new Class<?>[length + 1];
+			Method[] methods = new Method[length + 1];
+			System.arraycopy(state.types, 0, types, 0, length);
+			System.arraycopy(state.methods, 0, methods, 0, length);
+			types[length] = type;
+			methods[length] = method;
+			this.state = new State(resolver, types, methods);
+		} else {
+			this.state = new State(resolver, null, null);
+		}
+		return method;
+	}
+
+	private Method findReadMethod(Class<?> type) {
+		PropertyDescriptor[] descriptors;
+		try {
+			descriptors = Introspector.getBeanInfo(type).getPropertyDescriptors();
+		} catch (IntrospectionException e) {
+			return null;
+		}
+		for (PropertyDescriptor descriptor : descriptors) {
+			if (property.equals(descriptor.getName())) {
+				return node.findAccessibleMethod(descriptor.getReadMethod());
+			}
+		}
+		return null;
+	}
+}
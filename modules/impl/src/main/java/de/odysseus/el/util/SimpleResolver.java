@@ -17,6 +17,9 @@ package de.odysseus.el.util;
 
 import java.beans.FeatureDescriptor;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
 
 import javax.el.ArrayELResolver;
 import javax.el.BeanELResolver;
@@ -56,6 +59,8 @@ public class SimpleResolver extends ELResolver {
 
 	private final RootPropertyResolver root;
 	private final CompositeELResolver delegate;
+	private final boolean beans; // delegate is a bean resolver
+	private final boolean defaults; // delegate is a default resolver
 
 	/**
 	 * Create a resolver capable of resolving top-level identifiers. Everything else is passed to
@@ -65,6 +70,8 @@ public class SimpleResolver extends ELResolver {
 		delegate = new CompositeELResolver();
 		delegate.add(root = new RootPropertyResolver(readOnly));
 		delegate.add(resolver);
+		beans = resolver.getClass() == BeanELResolver.class;
+		defaults = resolver == DEFAULT_RESOLVER_READ_ONLY || resolver == DEFAULT_RESOLVER_READ_WRITE;
 	}
 
 	/**
@@ -100,6 +107,23 @@ public class SimpleResolver extends ELResolver {
 		return root;
 	}
 
+	/**
+	 * Answer <code>true</code> if properties of (non-<code>null</code>) base objects of the given
+	 * type are always resolved by a {@link BeanELResolver}. This is the case if our delegate is a
+	 * bean resolver or one of the default resolvers and the type is not handled by the array, list,
+	 * map or resource bundle resolvers.
+	 * 
+	 * @param type base object type
+	 * @return <code>true</code> if base objects of the given type are resolved as beans
+	 */
+	public boolean isBeanType(Class<?> type) {
+		if (defaults) {
+			return !type.isArray() && !List.class.isAssignableFrom(type)
+				&& !Map.class.isAssignableFrom(type) && !ResourceBundle.class.isAssignableFrom(type);
+		}
+		return beans;
+	}
+
 	@Override
 	public Class<?> getCommonPropertyType(ELContext context, Object base) {
 		return delegate.getCommonPropertyType(context, base);
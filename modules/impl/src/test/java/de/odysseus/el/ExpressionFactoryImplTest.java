@@ -15,6 +15,19 @@
  */ 
 package de.odysseus.el;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import de.odysseus.el.tree.TreeCache;
+import de.odysseus.el.tree.TreeStore;
+import de.odysseus.el.tree.TreeStoreListener;
+import de.odysseus.el.tree.TreeStoreStatistics;
+import de.odysseus.el.tree.impl.Cache;
+import de.odysseus.el.tree.impl.FrequencyCache;
 import de.odysseus.el.util.SimpleContext;
 import de.odysseus.el.util.SimpleResolver;
 
@@ -45,4 +58,130 @@ public class ExpressionFactoryImplTest extends TestCase {
 		context.getELResolver().setValue(context, null, "foo", this);
 		assertEquals(bar(), factory.createMethodExpression(context, "${foo.bar}", null, new Class[0]).invoke(context, null));
 	}
+
+	public void testCreateValueExpressions() {
+		SimpleContext context = new SimpleContext(new SimpleResolver());
+		Map<String, Class<?>> expressions = new LinkedHashMap<String, Class<?>>();
+		expressions.put("${1}", Object.class);
+		expressions.put("${2}", String.class);
+		expressions.put("${3", Object.class);
+		expressions.put("${ns:f()}", Object.class);
+		ExpressionFactoryImpl.Batch batch = factory.createValueExpressions(context, expressions, null);
+		assertEquals(2, batch.getExpressions().size());
+		assertEquals(1l, batch.getExpressions().get("${1}").getValue(context));
+		assertEquals("2", batch.getExpressions().get("${2}").getValue(context));
+		assertEquals(2, batch.getErrors().size());
+		assertTrue(batch.getErrors().containsKey("${3"));
+		assertTrue(batch.getErrors().containsKey("${ns:f()}"));
+	}
+
+	public void testIntern() {
+		Properties properties = new Properties();
+		properties.setProperty(ExpressionFactoryImpl.PROP_INTERN, "true");
+		ExpressionFactoryImpl factory = new ExpressionFactoryImpl(properties);
+		SimpleContext context = new SimpleContext(new SimpleResolver());
+		context.getELResolver().setValue(context, null, "foo", "bar");
+		TreeValueExpression e1 = factory.createValueExpression(context, "${foo}", Object.class);
+		TreeValueExpression e2 = factory.createValueExpression(context, "${ foo }", Object.class);
+		assertEquals(e1, e2);
+		assertEquals(e1.hashCode(), e2.hashCode());
+		assertEquals("bar", e2.getValue(context));
+		assertEquals("${ foo }", e2.getExpressionString());
+	}
+
+	public void testInternVariables() {
+		Properties properties = new Properties();
+		properties.setProperty(ExpressionFactoryImpl.PROP_INTERN, "true");
+		ExpressionFactoryImpl factory = new ExpressionFactoryImpl(properties);
+		SimpleContext context1 = new SimpleContext(new SimpleResolver());
+		context1.setVariable("list", factory.createValueExpression(new ArrayList<Object>(), List.class));
+		SimpleContext context2 = new SimpleContext(new SimpleResolver());
+		context2.setVariable("list", factory.createValueExpression(new ArrayList<Object>(), List.class));
+		TreeValueExpression e1 = factory.createValueExpression(context1, "${list}", Object.class);
+		TreeValueExpression e2 = factory.createValueExpression(context2, "${list}", Object.class);
+		((List<?>)context1.getVariableMapper().resolveVariable("list").getValue(context1)).add(null);
+		assertEquals(1, ((List<?>)e1.getValue(context1)).size());
+		assertEquals(0, ((List<?>)e2.getValue(context2)).size());
+	}
+
+	public void testCreateTreeCache() {
+		final TreeCache[] cache = new TreeCache[1];
+		Properties properties = new Properties();
+		properties.setProperty(TreeCache.class.getName(), FrequencyCache.class.getName());
+		properties.setProperty(ExpressionFactoryImpl.PROP_CACHE_SIZE, "42");
+		new ExpressionFactoryImpl(properties) {
+			@Override
+			protected TreeCache createTreeCache(int cacheSize, Properties properties) {
+				assertEquals(42, cacheSize);
+				return cache[0] = super.createTreeCache(cacheSize, properties);
+			}
+		};
+		assertTrue(cache[0] instanceof FrequencyCache);
+
+		new ExpressionFactoryImpl(new Properties()) {
+			@Override
+			protected TreeCache createTreeCache(int cacheSize, Properties properties) {
+				return cache[0] = super.createTreeCache(cacheSize, properties);
+			}
+		};
+		assertTrue(cache[0] instanceof Cache);
+	}
+
+	public void testCreateTreeStoreListener() {
+		final TreeStore[] store = new TreeStore[1];
+		Properties properties = new Properties();
+		properties.setProperty(TreeStoreListener.class.getName(), TreeStoreStatistics.class.getName());
+		ExpressionFactoryImpl factory = new ExpressionFactoryImpl(properties) {
+			@Override
+			protected TreeStore createTreeStore(int defaultCacheSize, Profile profile, Properties properties) {
+				return store[0] = super.createTreeStore(defaultCacheSize, profile, properties);
+			}
+		};
+		SimpleContext context = new SimpleContext(new SimpleResolver());
+		factory.createValueExpression(context, "${1}", Object.class);
+		factory.createValueExpression(context, "${1}", Object.class);
+		TreeStoreStatistics statistics = (TreeStoreStatistics)store[0].getListener();
+		assertEquals(1, statistics.getHitCount());
+		assertEquals(1, statistics.getMissCount());
+	}
+
+	public void testRegisterStore() {
+		final TreeStore[] store = new TreeStore[1];
+		Properties properties = new Properties();
+		new ExpressionFactoryImpl(properties) {
+			@Override
+			protected TreeStore createTreeStore(int defaultCacheSize, Profile profile, Properties properties) {
+				return store[0] = super.createTreeStore(defaultCacheSize, profile, properties);
+			}
+		};
+		assertNotSame(store[0], TreeStore.lookup(store[0].getBuilder()));
+
+		properties.setProperty(ExpressionFactoryImpl.PROP_REGISTER_STORE, "true");
+		new ExpressionFactoryImpl(properties) {
+			@Override
+			protected TreeStore createTreeStore(int defaultCacheSize, Profile profile, Properties properties) {
+				return store[0] = super.createTreeStore(defaultCacheSize, profile, properties);
+			}
+		};
+		try {
+			assertSame(store[0], TreeStore.lookup(store[0].getBuilder()));
+		} finally {
+			TreeStore.unregister(store[0]);
+		}
+	}
+
+	public void testClose() throws Exception {
+		File file = File.createTempFile("juel", ".cache");
+		file.delete();
+		try {
+			Properties properties = new Properties();
+			properties.setProperty(ExpressionFactoryImpl.PROP_CACHE_FILE, file.getPath());
+			ExpressionFactoryImpl factory = new ExpressionFactoryImpl(properties);
+			factory.createValueExpression(new SimpleContext(), "${foo}", Object.class);
+			factory.close();
+			assertTrue(file.isFile());
+		} finally {
+			file.delete();
+		}
+	}
 }
@@ -88,4 +88,12 @@ public class TreeMethodExpressionTest extends TestCase {
 		TreeMethodExpression expression = new TreeMethodExpression(store, null,  null, null, "${base.foo}", null, new Class[0]);
 		assertEquals(expression, deserialize(serialize(expression)));
 	}
+
+	public void testSerializeTree() throws Exception  {
+		TreeMethodExpression expression = new TreeMethodExpression(store, null,  null, null, "${base.foo}", null, new Class[0]);
+		expression.setSerializeTree(true);
+		TreeMethodExpression copy = (TreeMethodExpression)deserialize(serialize(expression));
+		assertEquals(expression, copy);
+		assertEquals(0, copy.invoke(context, null));
+	}
 }
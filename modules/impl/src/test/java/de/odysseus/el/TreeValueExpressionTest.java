@@ -19,7 +19,9 @@ import javax.el.BeanELResolver;
 import javax.el.PropertyNotFoundException;
 
 import de.odysseus.el.tree.TreeStore;
+import de.odysseus.el.tree.TreeStoreStatistics;
 import de.odysseus.el.tree.impl.Builder;
+import de.odysseus.el.tree.impl.Cache;
 import de.odysseus.el.util.SimpleContext;
 import de.odysseus.el.util.SimpleResolver;
 
@@ -163,8 +165,72 @@ public class TreeValueExpressionTest extends TestCase {
 		assertEquals("foo", new TreeValueExpression(store, null, null, null, "${property_foo}", Object.class).getValue(context));
 	}
 
+	public void testRender() throws Exception {
+		StringBuilder out = new StringBuilder("> ");
+		new TreeValueExpression(store, null, context.getVariableMapper(), null, "${property_foo}:${var_long_1 + 1}:${null}.", String.class).render(context, out);
+		assertEquals("> foo:2:.", out.toString());
+		out.setLength(0);
+		new TreeValueExpression(store, null, null, null, "${property_foo}", Object.class).render(context, out);
+		assertEquals("foo", out.toString());
+		out.setLength(0);
+		new TreeValueExpression(store, null, null, null, "${1}${2}", long.class).render(context, out);
+		assertEquals("12", out.toString());
+	}
+
 	public void testSerialize() throws Exception  {
 		TreeValueExpression expression = new TreeValueExpression(store, context.getFunctionMapper(), context.getVariableMapper(), null, "${var_long_1 + foo()}", Object.class);
 		assertEquals(expression, deserialize(serialize(expression)));
 	}
+
+	public void testSerializeTree() throws Exception  {
+		TreeValueExpression expression = new TreeValueExpression(store, context.getFunctionMapper(), context.getVariableMapper(), null, "#{var_long_1 + foo()}", Object.class);
+		byte[] bytes = serialize(expression);
+		expression.setSerializeTree(true);
+		byte[] treeBytes = serialize(expression);
+		assertTrue(treeBytes.length > bytes.length);
+
+		TreeValueExpression copy = (TreeValueExpression)deserialize(treeBytes);
+		assertEquals(expression, copy);
+		assertTrue(copy.isDeferred());
+		assertEquals(1l, copy.getValue(context));
+		assertEquals(treeBytes.length, serialize(copy).length);
+	}
+
+	public void testSerializeRegistered() throws Exception  {
+		TreeStore cached = new TreeStore(new Builder(Builder.Feature.NULL_PROPERTIES), new Cache(10));
+		TreeStoreStatistics statistics = new TreeStoreStatistics();
+		cached.setListener(statistics);
+		TreeValueExpression expression = new TreeValueExpression(cached, null, null, null, "${base.foobar}", Object.class);
+		assertEquals(1, statistics.getBuildCount());
+		byte[] bytes = serialize(expression);
+		TreeStore.register(cached);
+		try {
+			assertEquals(expression, deserialize(bytes));
+			assertEquals(1, statistics.getHitCount());
+			assertEquals(1, statistics.getBuildCount());
+		} finally {
+			TreeStore.unregister(cached);
+		}
+	}
+
+	public void testSerializeRegisteredMiss() throws Exception  {
+		TreeStore builtStore = new TreeStore(new Builder(Builder.Feature.NULL_PROPERTIES), null);
+		TreeValueExpression expression = new TreeValueExpression(builtStore, null, null, null, "${base.foobar}", Object.class);
+		expression.setSerializeTree(true);
+		byte[] bytes = serialize(expression);
+		TreeStore cached = new TreeStore(new Builder(Builder.Feature.NULL_PROPERTIES), new Cache(10));
+		TreeStoreStatistics statistics = new TreeStoreStatistics();
+		cached.setListener(statistics);
+		TreeStore.register(cached);
+		try {
+			assertEquals(expression, deserialize(bytes));
+			assertEquals(0, statistics.getBuildCount());
+			assertEquals(1, cached.getCacheSize());
+			assertEquals(expression, deserialize(bytes));
+			assertEquals(1, statistics.getHitCount());
+			assertEquals(0, statistics.getBuildCount());
+		} finally {
+			TreeStore.unregister(cached);
+		}
+	}
 }
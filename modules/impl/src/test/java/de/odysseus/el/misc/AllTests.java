@@ -27,6 +27,7 @@ public class AllTests {
 		suite.addTestSuite(BooleanOperationsTest.class);
 		suite.addTestSuite(TypeConverterImplTest.class);
 		suite.addTestSuite(MessagesTest.class);
+		suite.addTestSuite(InternerTest.class);
 		//$JUnit-END$
 		return suite;
 	}
@@ -345,6 +345,17 @@ public class BooleanOperationsTest extends TestCase {
 		} catch (Exception e) {}
 	}
 
+	public void testPrimitive() {
+		assertTrue(BooleanOperations.lt(converter, new Integer(1), new Long(2)));
+		assertFalse(BooleanOperations.gt(converter, new Integer(1), new Long(2)));
+		assertTrue(BooleanOperations.lt(converter, new Integer(1), new Double(1.5)));
+		assertTrue(BooleanOperations.gt(converter, new Float(1.5), new Short((short)1)));
+		assertTrue(BooleanOperations.eq(converter, new Integer(1), new Double(1)));
+		assertTrue(BooleanOperations.eq(converter, new Byte((byte)3), new Long(3)));
+		assertFalse(BooleanOperations.eq(converter, new Long(Long.MAX_VALUE), new Long(Long.MAX_VALUE - 1)));
+		assertTrue(BooleanOperations.eq(converter, new Double(Double.NaN), new Float(Float.NaN)));
+	}
+
 	/*
 	 * Test method for 'de.odysseus.el.lang.BooleanOperations.empty(Object)'
 	 */
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */ 
+package de.odysseus.el.misc;
+
+import junit.framework.TestCase;
+
+public class InternerTest extends TestCase {
+	public void testIntern() {
+		Interner<String> interner = new Interner<String>();
+		String foo = new String("foo");
+		assertSame(foo, interner.intern(foo));
+		assertSame(foo, interner.intern(new String("foo")));
+		assertEquals("bar", interner.intern(new String("bar")));
+		assertEquals(2, interner.size());
+		assertNull(interner.intern(null));
+	}
+}
@@ -298,4 +298,14 @@ public class NumberOperationsTest extends TestCase {
 		assertEquals(d2, NumberOperations.neg(converter, d1));
 		assertEquals(f2, NumberOperations.neg(converter, f1));
 	}
+
+	public void testPrimitive() {
+		assertSame(NumberOperations.valueOf(1000), NumberOperations.add(converter, new Long(400), new Integer(600)));
+		assertEquals(Long.valueOf(Long.MAX_VALUE), NumberOperations.sub(converter, new Long(Long.MAX_VALUE), new Byte((byte)0)));
+		assertEquals(new Double(3.5), NumberOperations.add(converter, new Integer(1), new Float(2.5)));
+		assertEquals(new Double(-0.5), NumberOperations.sub(converter, new Short((short)2), new Double(2.5)));
+		assertEquals(new Double(0.5), NumberOperations.div(converter, new Integer(1), new Long(2)));
+		assertEquals(new Long(1), NumberOperations.mod(converter, new Integer(7), new Long(3)));
+		assertEquals(new Double(1), NumberOperations.mod(converter, new Double(7), new Integer(3)));
+	}
 }
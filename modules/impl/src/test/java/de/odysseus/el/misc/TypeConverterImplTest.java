@@ -18,12 +18,17 @@ package de.odysseus.el.misc;
 import java.awt.Component;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
 import java.beans.PropertyChangeListener;
 import java.beans.PropertyEditor;
 import java.beans.PropertyEditorManager;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.el.ELException;
 
@@ -334,4 +339,67 @@ public class TypeConverterImplTest extends TestCase {
 		assertEquals((double)0, converter.coerceToType("0", double.class));
 		assertEquals('0', converter.coerceToType("0", char.class));
 	}
+
+	public void testCustomConverters() {
+		Map<Class<?>, TypeConverter> converters = new HashMap<Class<?>, TypeConverter>();
+		assertEquals(converter, new TypeConverterImpl(converters));
+		converters.put(Date.class, new TypeConverter() {
+			private static final long serialVersionUID = 1L;
+			@SuppressWarnings("unchecked")
+			public <T> T convert(Object value, Class<T> type) {
+				return (T)new Date(Long.parseLong(value.toString()));
+			}
+		});
+		TypeConverterImpl custom = new TypeConverterImpl(converters);
+		converters.clear();
+		assertFalse(converter.equals(custom));
+		assertEquals(new Date(42), custom.convert("42", Date.class));
+		assertEquals(Long.valueOf(42), custom.convert("42", Long.class));
+	}
+
+	public void testDeserializeLegacy() throws Exception {
+		// new TypeConverterImpl(), serialized before custom converters were added
+		byte[] bytes = {
+			-84, -19, 0, 5, 115, 114, 0, 37, 100, 101, 46, 111, 100, 121, 115, 115, 101, 117, 115, 46,
+			101, 108, 46, 109, 105, 115, 99, 46, 84, 121, 112, 101, 67, 111, 110, 118, 101, 114, 116, 101,
+			114, 73, 109, 112, 108, 0, 0, 0, 0, 0, 0, 0, 1, 2, 0, 0, 120, 112
+		};
+		ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+		TypeConverterImpl legacy = (TypeConverterImpl)in.readObject();
+		assertEquals(converter, legacy);
+		assertEquals(legacy, converter);
+		assertEquals(Long.valueOf(42), legacy.convert("42", Long.class));
+	}
+
+	public static class Code {
+		final String code;
+		Code(String code) {
+			this.code = code;
+		}
+		public static Code valueOf(String code) {
+			if (code.length() != 2) {
+				throw new IllegalArgumentException();
+			}
+			return new Code(code);
+		}
+	}
+
+	public void testStringToType() {
+		for (int i = 0; i < 2; i++) { // parse functions are cached
+			assertEquals("de", ((Code)converter.coerceToType("de", Code.class)).code);
+			try {
+				converter.coerceToType("foo", Code.class);
+				fail();
+			} catch (ELException e) {}
+			assertNull(converter.coerceToType("", Code.class));
+			try {
+				converter.coerceToType("foo", File.class); // constructors are not used
+				fail();
+			} catch (ELException e) {}
+			try {
+				converter.coerceToType("foo", getClass());
+				fail();
+			} catch (ELException e) {}
+		}
+	}
 }
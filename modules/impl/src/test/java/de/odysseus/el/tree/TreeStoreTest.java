@@ -15,10 +15,25 @@
  */ 
 package de.odysseus.el.tree;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import de.odysseus.el.TestCase;
 import de.odysseus.el.tree.Tree;
 import de.odysseus.el.tree.TreeStore;
+import de.odysseus.el.tree.impl.Builder;
 import de.odysseus.el.tree.impl.Cache;
+import de.odysseus.el.tree.impl.FrequencyCache;
 
 public class TreeStoreTest extends TestCase {
 	public void test() {
@@ -29,4 +44,204 @@ public class TreeStoreTest extends TestCase {
 		assertNotNull(tree);
 		assertSame(tree, store.get("1"));
 	}
+
+	public void testRegister() {
+		TreeStore store = new TreeStore(new Builder(Builder.Feature.VARARGS), null);
+		assertNull(TreeStore.lookup(new Builder(Builder.Feature.VARARGS)));
+		TreeStore.register(store);
+		assertSame(store, TreeStore.lookup(new Builder(Builder.Feature.VARARGS)));
+		assertNull(TreeStore.lookup(new Builder()));
+
+		TreeStore other = new TreeStore(new Builder(Builder.Feature.VARARGS), null);
+		TreeStore.unregister(other);
+		assertSame(store, TreeStore.lookup(store.getBuilder()));
+		TreeStore.register(other);
+		assertSame(other, TreeStore.lookup(store.getBuilder()));
+		TreeStore.unregister(store);
+		assertSame(other, TreeStore.lookup(store.getBuilder()));
+		TreeStore.unregister(other);
+		assertNull(TreeStore.lookup(store.getBuilder()));
+	}
+
+	public void testListener() {
+		TreeStore store = new TreeStore(BUILDER, new Cache(1));
+		assertNull(store.getListener());
+		assertEquals(0, store.getCacheSize());
+
+		TreeStoreStatistics statistics = new TreeStoreStatistics();
+		store.setListener(statistics);
+		assertSame(statistics, store.getListener());
+		store.get("1");
+		store.get("1");
+		store.get("2");
+		assertEquals(1, statistics.getHitCount());
+		assertEquals(2, statistics.getMissCount());
+		assertEquals(2, statistics.getBuildCount());
+		assertEquals(1, statistics.getEvictionCount());
+		assertEquals(1.0 / 3, statistics.getHitRatio(), 1e-9);
+		assertEquals(1, store.getCacheSize());
+		long builds = 0;
+		for (long count : statistics.getBuildTimeHistogram()) {
+			builds += count;
+		}
+		assertEquals(2, builds);
+
+		statistics.reset();
+		assertEquals(0, statistics.getHitCount());
+		assertEquals(0, statistics.getBuildTimeHistogram()[0]);
+
+		store.setListener(null);
+		store.get("3");
+		assertEquals(0, statistics.getMissCount());
+		assertEquals(0, statistics.getEvictionCount());
+	}
+
+	public void testListenerWithoutCache() {
+		TreeStore store = new TreeStore(BUILDER, null);
+		TreeStoreStatistics statistics = new TreeStoreStatistics();
+		store.setListener(statistics);
+		store.get("1");
+		store.get("1");
+		assertEquals(0, statistics.getHitCount());
+		assertEquals(2, statistics.getMissCount());
+		assertEquals(2, statistics.getBuildCount());
+		assertEquals(-1, store.getCacheSize());
+	}
+
+	public void testPreload() {
+		Tree tree = BUILDER.build("${foo}");
+		TreeStore store = new TreeStore(BUILDER, null);
+		store.preload(Collections.singletonMap("${foo}", tree));
+		assertEquals(1, store.getPreloadedSize());
+		TreeStoreStatistics statistics = new TreeStoreStatistics();
+		store.setListener(statistics);
+		assertSame(tree, store.get("${foo}"));
+		assertNotSame(store.get("${bar}"), store.get("${bar}"));
+		assertEquals(1, statistics.getHitCount());
+		assertEquals(2, statistics.getMissCount());
+
+		store.preload(null);
+		assertEquals(0, store.getPreloadedSize());
+		assertNotSame(tree, store.get("${foo}"));
+	}
+
+	/**
+	 * Builder counting builds, which waits for the given latch before building.
+	 */
+	static class SlowBuilder implements TreeBuilder {
+		private static final long serialVersionUID = 1L;
+		final AtomicInteger builds = new AtomicInteger();
+		final CountDownLatch latch;
+		SlowBuilder() {
+			this(new CountDownLatch(0));
+		}
+		SlowBuilder(CountDownLatch latch) {
+			this.latch = latch;
+		}
+		public Tree build(String expression) throws TreeBuilderException {
+			builds.incrementAndGet();
+			try {
+				latch.await(10, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return BUILDER.build(expression);
+		}
+	}
+
+	/**
+	 * Create a store whose builder waits until the given number of cache misses have occurred.
+	 */
+	TreeStore createSlowStore(int misses) {
+		final CountDownLatch latch = new CountDownLatch(misses);
+		TreeStore store = new TreeStore(new SlowBuilder(latch), new Cache(10));
+		store.setListener(new TreeStoreStatistics() {
+			@Override
+			public void miss(String expression) {
+				super.miss(expression);
+				latch.countDown();
+			}
+		});
+		return store;
+	}
+
+	List<Future<Tree>> getConcurrently(final TreeStore store, final String expression, int threads) throws Exception {
+		ExecutorService service = Executors.newFixedThreadPool(threads);
+		List<Future<Tree>> futures = new ArrayList<Future<Tree>>();
+		for (int i = 0; i < threads; i++) {
+			futures.add(service.submit(new Callable<Tree>() {
+				public Tree call() throws Exception {
+					return store.get(expression);
+				}
+			}));
+		}
+		service.shutdown();
+		return futures;
+	}
+
+	public void testCacheStatistics() {
+		FrequencyCache cache = new FrequencyCache(10);
+		TreeStore store = new TreeStore(BUILDER, cache);
+		store.get("${a}");
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0, cache.getHitCount());
+		store.get("${a}");
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+	}
+
+	public void testSingleFlight() throws Exception {
+		TreeStore store = createSlowStore(10);
+		SlowBuilder builder = (SlowBuilder)store.getBuilder();
+		List<Future<Tree>> futures = getConcurrently(store, "${foo}", 10);
+		Tree tree = futures.get(0).get();
+		for (Future<Tree> future : futures) {
+			assertSame(tree, future.get());
+		}
+		assertEquals(1, builder.builds.get());
+		assertSame(tree, store.get("${foo}"));
+	}
+
+	public void testSingleFlightFailure() throws Exception {
+		TreeStore store = createSlowStore(5);
+		for (Future<Tree> future : getConcurrently(store, "${foo", 5)) {
+			try {
+				future.get();
+				fail();
+			} catch (ExecutionException e) {
+				assertTrue(e.getCause() instanceof TreeBuilderException);
+			}
+		}
+	}
+
+	public void testLoad() throws Exception {
+		SlowBuilder builder = new SlowBuilder();
+		TreeStore store = new TreeStore(builder, new Cache(10));
+		TreeStoreStatistics statistics = new TreeStoreStatistics();
+		store.setListener(statistics);
+		List<String> expressions = Arrays.asList("${a}", "${b", "${c}", "${a}", "${d");
+		ExecutorService service = Executors.newFixedThreadPool(3);
+		TreeStore.LoadResult result = store.load(expressions, service);
+		service.shutdown();
+		assertEquals(Arrays.asList("${b", "${d"), new ArrayList<String>(result.getErrors().keySet()));
+		assertEquals(Arrays.asList("${a}", "${c}"), new ArrayList<String>(result.getTrees().keySet()));
+		assertEquals(2, store.getCacheSize());
+		assertEquals(4, builder.builds.get());
+		store.get("${a}");
+		store.get("${c}");
+		assertEquals(2, statistics.getHitCount());
+
+		assertTrue(store.load(Arrays.asList("${e}"), null).getErrors().isEmpty());
+		assertTrue(store.load(Arrays.asList("${f}")).getErrors().isEmpty());
+		assertEquals(4, store.getCacheSize());
+	}
+
+	public void testLoadExceedingCache() throws Exception {
+		SlowBuilder builder = new SlowBuilder();
+		TreeStore store = new TreeStore(builder, new Cache(1));
+		TreeStore.LoadResult result = store.load(Arrays.asList("${a}", "${b}", "${c}"));
+		assertEquals(3, result.getTrees().size());
+		assertNotNull(result.getTrees().get("${a}"));
+		assertEquals(3, builder.builds.get());
+	}
 }
@@ -18,7 +18,12 @@ package de.odysseus.el.tree;
 import de.odysseus.el.ObjectValueExpression;
 import de.odysseus.el.TestCase;
 import de.odysseus.el.misc.TypeConverter;
+import de.odysseus.el.misc.TypeConverterImpl;
 import de.odysseus.el.tree.Bindings;
+import de.odysseus.el.tree.impl.ast.AstBinary;
+import de.odysseus.el.tree.impl.ast.AstNested;
+import de.odysseus.el.tree.impl.ast.AstNode;
+import de.odysseus.el.tree.impl.ast.AstNumber;
 import de.odysseus.el.util.SimpleContext;
 
 public class TreeTest extends TestCase {
@@ -116,4 +121,59 @@ public class TreeTest extends TestCase {
 		assertNull(bindings.getVariable(2));
 		try { bindings.getVariable(3); fail(); } catch (Exception e) {}
 	}
+
+	public void testBindShared() throws Exception {
+		Tree tree = parse("${ns:f0()+foo}");
+		Bindings bindings = tree.bind(context.getFunctionMapper(), context.getVariableMapper());
+		assertSame(bindings, tree.bind(context.getFunctionMapper(), context.getVariableMapper()));
+		assertSame(bindings, tree.bind(context.getFunctionMapper(), context.getVariableMapper(), TypeConverter.DEFAULT));
+
+		TypeConverter converter = new TypeConverterImpl();
+		Bindings other = tree.bind(context.getFunctionMapper(), context.getVariableMapper(), converter);
+		assertNotSame(bindings, other);
+		assertSame(other, tree.bind(context.getFunctionMapper(), context.getVariableMapper(), converter));
+
+		context.setFunction("ns", "f0", TreeTest.class.getMethod("bar", new Class[]{int.class}));
+		tree = parse("${ns:f0(1)+foo}");
+		bindings = tree.bind(context.getFunctionMapper(), context.getVariableMapper(), converter);
+		assertSame(context.getFunctionMapper().resolveFunction("ns", "f0"), bindings.getFunction(0));
+
+		// bindings referring to variables are not shared
+		context.setVariable("foo", new ObjectValueExpression(TypeConverter.DEFAULT, 3, long.class));
+		other = tree.bind(context.getFunctionMapper(), context.getVariableMapper(), converter);
+		assertNotSame(bindings, other);
+		assertSame(context.getVariableMapper().resolveVariable("foo"), other.getVariable(0));
+		assertNotSame(other, tree.bind(context.getFunctionMapper(), context.getVariableMapper(), converter));
+	}
+
+	public void testStructuralHash() throws Exception {
+		String[] expressions = {
+			"foo\\${bar}", "${'a\\'b'}", "#{1.5e3 + -2}", "${empty null ? true : not false}",
+			"${v0 lt v1 && x[v0].y}", "${ns:f1(g0()) div (2)}", "${a.b(1, 'x')}", "${a}b${c}",
+			"a\\#{b}$", "${\"c\\\\d'e\"}"
+		};
+		for (String expression : expressions) {
+			Tree tree = parse(expression);
+			AstNode root = (AstNode)tree.getRoot();
+			assertEquals(root.getStructuralId(null).hashCode(), root.getStructuralHash(null));
+			Bindings bindings = tree.bind(context.getFunctionMapper(), context.getVariableMapper());
+			assertEquals(root.getStructuralId(bindings).hashCode(), root.getStructuralHash(bindings));
+		}
+	}
+
+	public void testStructuralHashSubclass() throws Exception {
+		AstNode plus = new AstBinary(new AstNumber(1l), new AstNumber(2l), AstBinary.ADD) {
+			@Override
+			public void appendStructure(StringBuilder b, Bindings bindings) {
+				b.append("plus(");
+				getChild(0).appendStructure(b, bindings);
+				b.append(", ");
+				getChild(1).appendStructure(b, bindings);
+				b.append(")");
+			}
+		};
+		AstNode root = new AstNested(plus);
+		assertEquals("(plus(1, 2))", root.getStructuralId(null));
+		assertEquals(root.getStructuralId(null).hashCode(), root.getStructuralHash(null));
+	}
 }
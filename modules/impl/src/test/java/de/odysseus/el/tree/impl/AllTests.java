@@ -24,8 +24,14 @@ public class AllTests {
 		TestSuite suite = new TestSuite("Test for de.odysseus.el.tree");
 		//$JUnit-BEGIN$
 		suite.addTestSuite(CacheTest.class);
+		suite.addTestSuite(FrequencyCacheTest.class);
 		suite.addTestSuite(ScannerTest.class);
 		suite.addTestSuite(ParserTest.class);
+		suite.addTestSuite(CompilerTest.class);
+		suite.addTestSuite(ConstantFolderTest.class);
+		suite.addTestSuite(TreeCodecTest.class);
+		suite.addTestSuite(PersistentCacheTest.class);
+		suite.addTestSuite(PrecompilerTest.class);
 		//$JUnit-END$
 		return suite;
 	}
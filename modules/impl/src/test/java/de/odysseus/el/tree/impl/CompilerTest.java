@@ -0,0 +1,174 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.util.Properties;
+
+import javax.el.BeanELResolver;
+import javax.el.ELException;
+import javax.el.PropertyNotFoundException;
+import javax.el.ValueExpression;
+
+import de.odysseus.el.ExpressionFactoryImpl;
+import de.odysseus.el.TestCase;
+import de.odysseus.el.tree.Bindings;
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.impl.ast.AstNode;
+import de.odysseus.el.util.SimpleContext;
+import de.odysseus.el.util.SimpleResolver;
+
+public class CompilerTest extends TestCase {
+	static final Builder COMPILING = new Builder(Builder.Feature.METHOD_INVOCATIONS, Builder.Feature.COMPILE);
+
+	SimpleContext context;
+
+	public long getFoo() {
+		return 1l;
+	}
+
+	public Object getNullObject() {
+		return null;
+	}
+
+	@Override
+	protected void setUp() throws Exception {
+		context = new SimpleContext(new SimpleResolver(new BeanELResolver()));
+		context.getELResolver().setValue(context, null, "base", this);
+		context.setVariable("two", new ExpressionFactoryImpl().createValueExpression(2l, long.class));
+	}
+
+	Object interpret(String expression) {
+		Tree tree = parse(expression);
+		return ((AstNode)tree.getRoot()).eval(tree.bind(null, context.getVariableMapper()), context);
+	}
+
+	Object compile(String expression) {
+		Tree tree = parse(expression);
+		Bindings bindings = tree.bind(null, context.getVariableMapper());
+		return new Compiler().evaluator((AstNode)tree.getRoot()).eval(bindings, context);
+	}
+
+	void assertCompiled(String expression) {
+		assertEquals(interpret(expression), compile(expression));
+	}
+
+	public void testLiterals() {
+		assertCompiled("${null}");
+		assertCompiled("${true}");
+		assertCompiled("${false}");
+		assertCompiled("${42}");
+		assertCompiled("${4.2}");
+		assertCompiled("${'foo'}");
+		assertCompiled("foo");
+	}
+
+	public void testOperators() {
+		assertCompiled("${1 + 2}");
+		assertCompiled("${1 - 2.0}");
+		assertCompiled("${3 * two}");
+		assertCompiled("${3 / two}");
+		assertCompiled("${3 % two}");
+		assertCompiled("${-two}");
+		assertCompiled("${1 < two}");
+		assertCompiled("${1 <= two}");
+		assertCompiled("${1 > two}");
+		assertCompiled("${1 >= two}");
+		assertCompiled("${'1' == 1}");
+		assertCompiled("${'1' != 1}");
+		assertCompiled("${true && 'false'}");
+		assertCompiled("${false && 1 / 0}");
+		assertCompiled("${true || 1 / 0}");
+		assertCompiled("${false || 'true'}");
+		assertCompiled("${!true}");
+		assertCompiled("${!'false'}");
+		assertCompiled("${empty null}");
+		assertCompiled("${empty ''}");
+		assertCompiled("${empty 'foo'}");
+	}
+
+	public void testChoice() {
+		assertCompiled("${true ? 1 : 2}");
+		assertCompiled("${'false' ? 1 : two}");
+		assertCompiled("${1 < two ? (two < 3 ? 'a' : 'b') : 'c'}");
+	}
+
+	public void testComposite() {
+		assertCompiled("a${1}b${two}c");
+		assertCompiled("${null}${'foo'}");
+	}
+
+	public void testProperties() {
+		assertCompiled("${base.foo}");
+		assertCompiled("${base['foo'] + 1}");
+		assertCompiled("${base.nullObject.foo}");
+		try {
+			compile("${base.bad}");
+			fail();
+		} catch (PropertyNotFoundException e) {
+			// ok
+		}
+	}
+
+	public void testInterpreted() {
+		assertCompiled("${base.foo + base.getFoo()}");
+		assertCompiled("${two + two}");
+	}
+
+	public void testCompile() {
+		Compiler compiler = new Compiler(2);
+		AstNode node = (AstNode)parse("${base.foo + two}").getRoot();
+		AstNode compiled = compiler.compile(node);
+		assertNotSame(node, compiled);
+		assertSame(compiled, compiler.compile(compiled));
+		assertEquals(node.getStructuralId(null), compiled.getStructuralId(null));
+		assertEquals(node.getCardinality(), compiled.getCardinality());
+		assertEquals(node.isLiteralText(), compiled.isLiteralText());
+		Bindings bindings = parse("${base.foo + two}").bind(null, context.getVariableMapper());
+		for (int i = 0; i < 5; i++) {
+			assertEquals(3l, compiled.eval(bindings, context));
+		}
+
+		// nothing to compile
+		node = (AstNode)parse("${two}").getRoot();
+		assertSame(node, compiler.compile(node));
+	}
+
+	public void testBuilder() {
+		Tree tree = COMPILING.build("${base.foo + 1}");
+		assertEquals(parse("${base.foo + 1}").getRoot().getStructuralId(null), tree.getRoot().getStructuralId(null));
+		Bindings bindings = tree.bind(null, null);
+		for (int i = 0; i < 2 * Compiler.DEFAULT_THRESHOLD; i++) {
+			assertEquals(2l, ((AstNode)tree.getRoot()).eval(bindings, context));
+		}
+		try {
+			((AstNode)COMPILING.build("${1 / 'a'}").getRoot()).eval(bindings, context);
+			fail();
+		} catch (ELException e) {
+			// ok
+		}
+	}
+
+	public void testFactory() {
+		Properties properties = new Properties();
+		properties.setProperty(ExpressionFactoryImpl.PROP_COMPILE, "true");
+		ExpressionFactoryImpl factory = new ExpressionFactoryImpl(properties);
+		ValueExpression expression = factory.createValueExpression(context, "${base.foo * 42}", Object.class);
+		for (int i = 0; i < 2 * Compiler.DEFAULT_THRESHOLD; i++) {
+			assertEquals(42l, expression.getValue(context));
+		}
+		assertEquals(factory.createValueExpression(context, "${base.foo * 42}", Object.class), expression);
+	}
+}
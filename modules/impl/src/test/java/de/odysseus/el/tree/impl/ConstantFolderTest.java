@@ -0,0 +1,83 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import javax.el.BeanELResolver;
+
+import de.odysseus.el.ExpressionFactoryImpl;
+import de.odysseus.el.TestCase;
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.impl.ast.AstNode;
+import de.odysseus.el.util.SimpleContext;
+import de.odysseus.el.util.SimpleResolver;
+
+public class ConstantFolderTest extends TestCase {
+	static final Builder FOLDING = new Builder(Builder.Feature.METHOD_INVOCATIONS, Builder.Feature.CONSTANT_FOLDING);
+
+	SimpleContext context;
+
+	@Override
+	protected void setUp() throws Exception {
+		context = new SimpleContext(new SimpleResolver(new BeanELResolver()));
+		context.setVariable("two", new ExpressionFactoryImpl().createValueExpression(2l, long.class));
+	}
+
+	String fold(String expression) {
+		return FOLDING.build(expression).getRoot().getStructuralId(null);
+	}
+
+	Object eval(Builder builder, String expression) {
+		Tree tree = builder.build(expression);
+		return ((AstNode)tree.getRoot()).eval(tree.bind(null, context.getVariableMapper()), context);
+	}
+
+	void assertFolded(String expected, String expression) {
+		assertEquals(expected, fold(expression));
+		assertEquals(eval(BUILDER, expression), eval(FOLDING, expression));
+	}
+
+	public void testOperators() {
+		assertFolded("${1048576}", "${1024 * 1024}");
+		assertFolded("${3.0}", "${(1 + 2) / 1}");
+		assertFolded("${-3}", "${-(1 + 2)}");
+		assertFolded("${true}", "${empty ''}");
+		assertFolded("${false}", "${not true}");
+		assertFolded("${true}", "${'a' < 'b'}");
+		assertFolded("${true}", "${1 == 1.0}");
+		assertFolded("${false}", "${false and two}");
+		assertFolded("${true}", "${true or two}");
+		assertFolded("${3 * two}", "${(1 + 2) * two}");
+	}
+
+	public void testChoice() {
+		assertFolded("${(two)}", "${true ? two : 0}");
+		assertFolded("${0}", "${1 > 2 ? two : 0}");
+		assertEquals("${two > 1 ? 3 : 0}", fold("${two > 1 ? 1 + 2 : 0}"));
+		assertFalse(FOLDING.build("${true ? two : 0}").getRoot().isLeftValue());
+	}
+
+	public void testComposite() {
+		assertFolded("foo${2}bar${two + 1}", "foo${1 + 1}bar${two + 1}");
+	}
+
+	public void testNotFolded() {
+		assertEquals("${'1' + 1}", fold("${'1' + 1}"));
+		assertEquals("${1 % 0}", fold("${1 % 0}"));
+		assertEquals("${1 / 0}", fold("${1 / 0}"));
+		assertEquals("${true && two}", fold("${true and two}"));
+		assertEquals("${1 + 1}", BUILDER.build("${1 + 1}").getRoot().getStructuralId(null));
+	}
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import de.odysseus.el.TestCase;
+import de.odysseus.el.tree.Tree;
+
+public class FrequencyCacheTest extends TestCase {
+	public void testSingleThread() {
+		FrequencyCache cache = null;
+
+		// check if caching works, cache size 1
+		cache = new FrequencyCache(1);
+		cache.put("1", parse("1"));
+		assertNotNull(cache.get("1"));
+		assertEquals(1, cache.size());
+
+		// check if eviction works, cache size 1
+		cache = new FrequencyCache(1);
+		cache.put("1", parse("1"));
+		cache.put("2", parse("2"));
+		assertEquals(1, cache.size());
+		assertEquals(1, cache.getEvictionCount());
+
+		// check if size is bounded, cache size 9
+		cache = new FrequencyCache(9);
+		for (int i = 1; i < 100; i++) {
+			cache.put("" + i, parse("" + i));
+			assertEquals(Math.min(i, 9), cache.size());
+		}
+		assertEquals(90, cache.getEvictionCount());
+
+		try {
+			new FrequencyCache(0);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// ok
+		}
+	}
+
+	public void testCounters() {
+		FrequencyCache cache = new FrequencyCache(10);
+		assertNull(cache.get("1"));
+		cache.put("1", parse("1"));
+		assertNotNull(cache.get("1"));
+		assertNotNull(cache.get("1"));
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(0, cache.getEvictionCount());
+	}
+
+	public void testFrequency() {
+		FrequencyCache cache = new FrequencyCache(100);
+		for (int i = 0; i < 50; i++) {
+			String expression = "${hot" + i + "}";
+			cache.put(expression, parse(expression));
+		}
+		for (int n = 0; n < 5; n++) {
+			for (int i = 0; i < 50; i++) {
+				assertNotNull(cache.get("${hot" + i + "}"));
+			}
+		}
+		// scan of one-off expressions must not flush the hot ones
+		for (int i = 0; i < 1000; i++) {
+			String expression = "${cold" + i + "}";
+			cache.put(expression, parse(expression));
+		}
+		for (int i = 0; i < 50; i++) {
+			assertNotNull(cache.get("${hot" + i + "}"));
+		}
+		assertEquals(100, cache.size());
+	}
+
+	public void testMultiThread() throws Exception {
+		final int numberOfThreads = 10;
+		final int numberOfLookups = 10000;
+		final FrequencyCache cache = new FrequencyCache(100, numberOfThreads);
+		final Builder builder = new Builder();
+		ExecutorService service = Executors.newFixedThreadPool(numberOfThreads);
+		Collection<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+		for (int i = 0; i < numberOfThreads; i++) {
+			final Random random = new Random(i);
+			tasks.add(new Callable<Long>() {
+				public Long call() throws Exception {
+					long time = System.currentTimeMillis();
+					for (int j = 0; j < numberOfLookups; j++) {
+						String expression = String.valueOf(Math.abs(random.nextInt()) % 1000);
+						Tree tree = cache.get(expression);
+						if (tree == null) {
+							cache.put(expression, builder.build(expression));
+						} else {
+							assertEquals(expression, tree.getRoot().getStructuralId(null));
+						}
+					}
+					return System.currentTimeMillis() - time;
+				}
+			});
+		}
+		for (Future<Long> future : service.invokeAll(tasks, 10L, TimeUnit.SECONDS)) {
+			if (!future.isDone() || future.isCancelled()) {
+				fail();
+			}
+			future.get();
+		}
+		service.shutdown();
+		assertTrue(cache.size() <= 100);
+		assertEquals(numberOfThreads * numberOfLookups, cache.getHitCount() + cache.getMissCount());
+	}
+}
@@ -17,6 +17,7 @@ package de.odysseus.el.tree.impl;
 
 import de.odysseus.el.TestCase;
 import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.TreeBuilderException;
 import de.odysseus.el.tree.impl.ast.AstBinary;
 
 public class ParserTest extends TestCase {
@@ -142,6 +143,17 @@ public class ParserTest extends TestCase {
 		try { parse("#{a}${a}"); fail(); } catch (Exception e) {}
 	}
 
+	public void testCharSequence() {
+		Tree tree = BUILDER.build(new StringBuilder("a${b.c('d')}e"));
+		assertEquals(parse("a${b.c('d')}e").getRoot().getStructuralId(null), tree.getRoot().getStructuralId(null));
+		try {
+			BUILDER.build(new StringBuilder("${a"));
+			fail();
+		} catch (TreeBuilderException e) {
+			assertEquals("${a", e.getExpression());
+		}
+	}
+
 	public void testInteger() {
 		verifyEvalExpression("${0}");
 	}
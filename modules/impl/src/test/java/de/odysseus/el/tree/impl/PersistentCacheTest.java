@@ -0,0 +1,118 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.io.File;
+import java.io.FileOutputStream;
+
+import de.odysseus.el.TestCase;
+import de.odysseus.el.tree.Tree;
+
+public class PersistentCacheTest extends TestCase {
+	File file;
+
+	@Override
+	protected void setUp() throws Exception {
+		file = File.createTempFile("juel", ".cache");
+		file.delete();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		file.delete();
+	}
+
+	public void testSaveLoad() throws Exception {
+		PersistentCache cache = new PersistentCache(new Cache(100), BUILDER, file, 100);
+		assertEquals(0, cache.load());
+		for (String expression : TreeCodecTest.EXPRESSIONS) {
+			cache.put(expression, parse(expression));
+		}
+		assertEquals(TreeCodecTest.EXPRESSIONS.length, cache.save());
+		assertTrue(file.isFile());
+
+		cache = new PersistentCache(new Cache(100), BUILDER, file, 100);
+		assertEquals(TreeCodecTest.EXPRESSIONS.length, cache.load());
+		assertEquals(0, cache.size());
+		Tree tree = cache.get("${foo.bar + foo.bar + foo.bar}");
+		assertNotNull(tree);
+		assertEquals(parse("${foo.bar + foo.bar + foo.bar}").getRoot().getStructuralId(null), tree.getRoot().getStructuralId(null));
+		assertSame(tree, cache.get("${foo.bar + foo.bar + foo.bar}"));
+		assertEquals(1, cache.size());
+		assertNull(cache.get("${unknown}"));
+
+		// decoded and undecoded entries are saved again
+		assertEquals(TreeCodecTest.EXPRESSIONS.length, cache.save());
+
+		// undecoded entries have been copied from the replaced file
+		for (String expression : TreeCodecTest.EXPRESSIONS) {
+			assertNotNull(cache.get(expression));
+		}
+	}
+
+	public void testLimit() throws Exception {
+		PersistentCache cache = new PersistentCache(new Cache(10), BUILDER, file, 2);
+		cache.put("${a}", parse("${a}"));
+		cache.put("${b}", parse("${b}"));
+		cache.put("${c}", parse("${c}"));
+		assertEquals(2, cache.save());
+	}
+
+	public void testEvicted() throws Exception {
+		PersistentCache cache = new PersistentCache(new Cache(2), BUILDER, file, 10);
+		cache.put("${a}", parse("${a}"));
+		cache.put("${b}", parse("${b}"));
+		cache.put("${c}", parse("${c}"));
+		assertEquals(2, cache.save());
+
+		cache = new PersistentCache(new Cache(10), BUILDER, file, 10);
+		cache.load();
+		assertNull(cache.get("${a}"));
+		assertNotNull(cache.get("${b}"));
+		assertNotNull(cache.get("${c}"));
+	}
+
+	public void testClose() throws Exception {
+		PersistentCache cache = new PersistentCache(new Cache(10), BUILDER, file, 10);
+		cache.saveOnShutdown();
+		cache.put("${a}", parse("${a}"));
+		cache.close();
+		assertTrue(file.isFile());
+	}
+
+	public void testIncompatible() throws Exception {
+		PersistentCache cache = new PersistentCache(new Cache(100), BUILDER, file, 100);
+		cache.put("${foo}", parse("${foo}"));
+		cache.save();
+
+		cache = new PersistentCache(new Cache(10), new Builder(Builder.Feature.NULL_PROPERTIES), file, 10);
+		assertEquals(0, cache.load());
+		assertNull(cache.get("${foo}"));
+	}
+
+	public void testCorrupt() throws Exception {
+		FileOutputStream out = new FileOutputStream(file);
+		out.write(new byte[]{1, 2, 3});
+		out.close();
+		PersistentCache cache = new PersistentCache(new Cache(100), BUILDER, file, 100);
+		try {
+			cache.load();
+			fail();
+		} catch (java.io.IOException e) {
+			// ok
+		}
+	}
+}
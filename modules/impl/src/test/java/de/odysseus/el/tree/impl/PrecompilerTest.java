@@ -0,0 +1,137 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import javax.el.ValueExpression;
+
+import de.odysseus.el.ExpressionFactoryImpl;
+import de.odysseus.el.TestCase;
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.util.SimpleContext;
+
+public class PrecompilerTest extends TestCase {
+	StringWriter errors;
+	Precompiler precompiler;
+
+	@Override
+	protected void setUp() throws Exception {
+		errors = new StringWriter();
+		precompiler = new Precompiler(BUILDER, new PrintWriter(errors, true));
+	}
+
+	public void testExtract() {
+		List<Precompiler.Occurrence> occurrences =
+			Precompiler.extract("<p>${foo}</p>\n\\${bar} #{baz.x('}')}\n${a\nb} ${open");
+		assertEquals(4, occurrences.size());
+		assertEquals("${foo}", occurrences.get(0).getExpression());
+		assertEquals(1, occurrences.get(0).getLine());
+		assertEquals("#{baz.x('}')}", occurrences.get(1).getExpression());
+		assertEquals(2, occurrences.get(1).getLine());
+		assertEquals("${a\nb}", occurrences.get(2).getExpression());
+		assertEquals(3, occurrences.get(2).getLine());
+		assertEquals("${open", occurrences.get(3).getExpression());
+		assertEquals(4, occurrences.get(3).getLine());
+	}
+
+	public void testScan() {
+		assertEquals(0, precompiler.scan("a.jsp", "${foo} ${foo} ${1 + 2}"));
+		assertEquals(2, precompiler.getTrees().size());
+		assertEquals(1, precompiler.scan("b.jsp", "ok\n${foo +}"));
+		assertEquals(1, precompiler.getErrorCount());
+		assertTrue(errors.toString().startsWith("b.jsp:2: "));
+	}
+
+	public void testScanDirectory() throws Exception {
+		File dir = File.createTempFile("juel", ".dir");
+		dir.delete();
+		dir.mkdir();
+		File jsp = new File(dir, "a.jsp");
+		File bin = new File(dir, "b.bin");
+		try {
+			Writer writer = new OutputStreamWriter(new FileOutputStream(jsp), "UTF-8");
+			writer.write("${foo}");
+			writer.close();
+			writer = new OutputStreamWriter(new FileOutputStream(bin), "UTF-8");
+			writer.write("${bar}");
+			writer.close();
+			assertEquals(0, precompiler.scan(dir));
+			assertEquals(1, precompiler.getTrees().size());
+			assertTrue(precompiler.getTrees().containsKey("${foo}"));
+		} finally {
+			jsp.delete();
+			bin.delete();
+			dir.delete();
+		}
+	}
+
+	public void testBundle() throws Exception {
+		precompiler.scan("a.jsp", "${foo.bar + 1} #{foo.baz}");
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		assertEquals(2, precompiler.write(bytes));
+
+		Map<String, Tree> trees = TreeBundle.read(BUILDER, new ByteArrayInputStream(bytes.toByteArray()));
+		assertEquals(2, trees.size());
+		assertEquals(parse("${foo.bar + 1}").getRoot().getStructuralId(null), trees.get("${foo.bar + 1}").getRoot().getStructuralId(null));
+
+		// runtime-only features are compatible
+		Builder compiling = new Builder(Builder.Feature.METHOD_INVOCATIONS, Builder.Feature.COMPILE);
+		assertEquals(2, TreeBundle.read(compiling, new ByteArrayInputStream(bytes.toByteArray())).size());
+
+		// incompatible builder
+		try {
+			TreeBundle.read(new Builder(), new ByteArrayInputStream(bytes.toByteArray()));
+			fail();
+		} catch (IOException e) {
+			// ok
+		}
+	}
+
+	public void testFactory() throws Exception {
+		precompiler.scan("a.jsp", "${x * 2}");
+		File file = File.createTempFile("juel", ".bundle");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			precompiler.write(out);
+			out.close();
+
+			Properties properties = new Properties();
+			properties.setProperty(ExpressionFactoryImpl.PROP_METHOD_INVOCATIONS, "true");
+			properties.setProperty(ExpressionFactoryImpl.PROP_VAR_ARGS, "false");
+			properties.setProperty(ExpressionFactoryImpl.PROP_COMPILE, "true");
+			properties.setProperty(ExpressionFactoryImpl.PROP_TREE_BUNDLE, file.getPath());
+			ExpressionFactoryImpl factory = new ExpressionFactoryImpl(properties);
+			SimpleContext context = new SimpleContext();
+			context.setVariable("x", factory.createValueExpression(21l, long.class));
+			ValueExpression expression = factory.createValueExpression(context, "${x * 2}", Object.class);
+			assertEquals(42l, expression.getValue(context));
+		} finally {
+			file.delete();
+		}
+	}
+}
@@ -189,4 +189,20 @@ public class ScannerTest extends TestCase {
 	public void testDeferred() throws ScanException {
 		assertEquals(new Symbol[]{ START_EVAL_DEFERRED }, symbols("#{"));	
 	}
+
+	public void testImages() throws ScanException {
+		Scanner scanner = new Scanner(new StringBuilder("a\\${b}${'c'+'d\\'e'+f1+2.5}g"));
+		assertEquals("a${b}", scanner.next().getImage());
+		assertEquals(START_EVAL_DYNAMIC, scanner.next().getSymbol());
+		assertEquals("c", scanner.next().getImage());
+		assertEquals(PLUS, scanner.next().getSymbol());
+		assertEquals("d'e", scanner.next().getImage());
+		assertEquals(PLUS, scanner.next().getSymbol());
+		assertEquals("f1", scanner.next().getImage());
+		assertEquals(PLUS, scanner.next().getSymbol());
+		assertEquals("2.5", scanner.next().getImage());
+		assertEquals(END_EVAL, scanner.next().getSymbol());
+		assertEquals("g", scanner.next().getImage());
+		assertEquals(EOF, scanner.next().getSymbol());
+	}
 }
\ No newline at end of file
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2006-2009 Odysseus Software GmbH
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package de.odysseus.el.tree.impl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import de.odysseus.el.TestCase;
+import de.odysseus.el.tree.FunctionNode;
+import de.odysseus.el.tree.IdentifierNode;
+import de.odysseus.el.tree.Tree;
+import de.odysseus.el.tree.impl.ast.AstBinary;
+import de.odysseus.el.tree.impl.ast.AstNode;
+import de.odysseus.el.tree.impl.ast.AstNull;
+
+public class TreeCodecTest extends TestCase {
+	static final String[] EXPRESSIONS = {
+		"foo",
+		"",
+		"${foo}",
+		"#{foo.bar}",
+		"${foo[bar].baz}",
+		"${ns:f(1, 'a', 2.5, null, true, false)} ${f()}",
+		"a${1 + 2 - 3 * 4 / 5 % 6}b${x < 1 && y > 2 || !z}c",
+		"${a == b ? -a : empty b}",
+		"${a != b && a <= b && a >= b}",
+		"${(foo).bar(1, baz)}",
+		"${foo.bar.baz(x)[1]}",
+		"${'long text \\' with quotes'}",
+		"${1.5e100 + 42}",
+		"${foo.bar + foo.bar + foo.bar}"
+	};
+
+	byte[] encode(TreeCodec codec, Tree tree) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		codec.writeHeader(out);
+		codec.encode(tree, out);
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	Tree decode(TreeCodec codec, byte[] bytes) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+		assertTrue(codec.readHeader(in));
+		return codec.decode(in);
+	}
+
+	public void testRoundTrip() throws IOException {
+		TreeCodec codec = new TreeCodec(BUILDER);
+		for (String expression : EXPRESSIONS) {
+			Tree tree = parse(expression);
+			assertTrue(codec.isEncodable(tree));
+			Tree decoded = decode(codec, encode(codec, tree));
+			assertEquals(expression, tree.getRoot().getStructuralId(null), decoded.getRoot().getStructuralId(null));
+			assertEquals(tree.isDeferred(), decoded.isDeferred());
+			assertEquals(tree.getRoot().isLeftValue(), decoded.getRoot().isLeftValue());
+			assertEquals(tree.getRoot().isMethodInvocation(), decoded.getRoot().isMethodInvocation());
+
+			Iterator<FunctionNode> functions = decoded.getFunctionNodes().iterator();
+			for (FunctionNode node : tree.getFunctionNodes()) {
+				FunctionNode other = functions.next();
+				assertEquals(node.getName(), other.getName());
+				assertEquals(node.getIndex(), other.getIndex());
+				assertEquals(node.getParamCount(), other.getParamCount());
+			}
+			assertFalse(functions.hasNext());
+			Iterator<IdentifierNode> identifiers = decoded.getIdentifierNodes().iterator();
+			for (IdentifierNode node : tree.getIdentifierNodes()) {
+				IdentifierNode other = identifiers.next();
+				assertEquals(node.getName(), other.getName());
+				assertEquals(node.getIndex(), other.getIndex());
+			}
+			assertFalse(identifiers.hasNext());
+		}
+	}
+
+	public void testEval() throws IOException {
+		TreeCodec codec = new TreeCodec(BUILDER);
+		Tree tree = decode(codec, encode(codec, parse("${1 + 2 * 3 < 10 ? 'yes' : 'no'}")));
+		assertEquals("yes", ((AstNode)tree.getRoot()).eval(tree.bind(null, null), null));
+	}
+
+	public void testCompile() throws IOException {
+		Builder builder = new Builder(Builder.Feature.COMPILE);
+		TreeCodec codec = new TreeCodec(builder);
+		Tree tree = builder.build("${1 + 2}");
+		Tree decoded = decode(codec, encode(codec, tree));
+		assertEquals(tree.getRoot().getClass(), decoded.getRoot().getClass());
+		assertEquals(3l, ((AstNode)decoded.getRoot()).eval(decoded.bind(null, null), null));
+	}
+
+	public void testSignature() throws IOException {
+		byte[] bytes = encode(new TreeCodec(BUILDER), parse("${foo}"));
+		TreeCodec codec = new TreeCodec(new Builder());
+		assertFalse(BUILDER.equals(new Builder()));
+		assertFalse(codec.getSignature().equals(new TreeCodec(BUILDER).getSignature()));
+		assertFalse(codec.readHeader(new DataInputStream(new ByteArrayInputStream(bytes))));
+	}
+
+	public void testCorrupt() throws IOException {
+		TreeCodec codec = new TreeCodec(BUILDER);
+		byte[] bytes = encode(codec, parse("${foo.bar(baz)}"));
+		byte[] truncated = new byte[bytes.length - 2];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		try {
+			decode(codec, truncated);
+			fail();
+		} catch (IOException e) {
+			// ok
+		}
+	}
+
+	public void testNotEncodable() throws IOException {
+		AstNode node = new AstBinary(new AstNull(), new AstNull(), AstBinary.ADD) {}; // subclass
+		List<FunctionNode> functions = Collections.emptyList();
+		List<IdentifierNode> identifiers = Collections.emptyList();
+		Tree tree = new Tree(node, functions, identifiers, false);
+		TreeCodec codec = new TreeCodec(BUILDER);
+		assertFalse(codec.isEncodable(tree));
+		try {
+			encode(codec, tree);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// ok
+		}
+	}
+}
@@ -18,6 +18,7 @@ package de.odysseus.el.tree.impl.ast;
 import javax.el.ELException;
 
 import de.odysseus.el.TestCase;
+import de.odysseus.el.misc.TypeConverterImpl;
 import de.odysseus.el.tree.Bindings;
 
 public class AstCompositeTest extends TestCase {
@@ -31,6 +32,32 @@ public class AstCompositeTest extends TestCase {
 		assertEquals("101", parseNode("${1}0${1}").eval(bindings, null));
 	}
 
+	public void testEvalRepeated() {
+		StringBuilder value = new StringBuilder();
+		for (int i = 0; i < 100; i++) {
+			value.append("0123456789");
+		}
+		AstComposite node = parseNode("<${'" + value + "'}>${1}");
+		for (int i = 0; i < 3; i++) {
+			assertEquals("<" + value + ">1", node.eval(bindings, null));
+		}
+	}
+
+	public void testEvalConverter() throws Exception {
+		Bindings upper = new Bindings(null, null, new TypeConverterImpl() {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected String coerceToString(Object value) {
+				return super.coerceToString(value).toUpperCase();
+			}
+		});
+		AstComposite node = parseNode("a${'b'}c");
+		assertEquals("ABC", node.eval(upper, null));
+		StringBuilder out = new StringBuilder();
+		node.appendValue(out, upper, null);
+		assertEquals("ABC", out.toString());
+	}
+
 	public void testAppendStructure() {
 		StringBuilder s = new StringBuilder();
 		parseNode("${1}0${1}").appendStructure(s, bindings);
@@ -76,6 +76,54 @@ public class AstDotTest extends TestCase {
 		assertEquals(1l, parseNode("${base.foo}").eval(bindings, context));
 	}
 
+	public void testInlineCache() {
+		AstDot node = parseNode("${base.foo}");
+		assertEquals(1l, node.eval(bindings, context));
+		foo = 2l;
+		assertEquals(2l, node.eval(bindings, context));
+
+		// different resolver instance: must not use the cached read method
+		SimpleContext other = new SimpleContext(new SimpleResolver(new BeanELResolver() {
+			@Override
+			public Object getValue(javax.el.ELContext context, Object base, Object property) {
+				context.setPropertyResolved(true);
+				return "other";
+			}
+		}));
+		other.getELResolver().setValue(other, null, "base", this);
+		assertEquals("other", node.eval(bindings, other));
+		assertEquals(2l, node.eval(bindings, context));
+
+		// polymorphic
+		node = parseNode("${base.class}");
+		Object[] bases = { "foo", 1, 1l, 1.0, true, this, new Object() };
+		for (int i = 0; i < 2; i++) {
+			for (Object base : bases) {
+				assertSame(base.getClass(), node.eval(bindings, context, base));
+			}
+		}
+	}
+
+	public void testPropertyCache() {
+		BeanELResolver resolver = new BeanELResolver();
+		PropertyCache cache = new PropertyCache(parseNode("${base.class}"), "class");
+		assertNotNull(cache.get(resolver, getClass()));
+
+		// negative results
+		assertNull(new PropertyCache(parseNode("${base.bad}"), "bad").get(resolver, getClass()));
+
+		// megamorphic
+		Class<?>[] types = { String.class, Integer.class, Long.class, Double.class };
+		for (Class<?> type : types) {
+			assertNotNull(cache.get(resolver, type));
+		}
+		assertNull(cache.get(resolver, getClass()));
+		assertNull(cache.get(resolver, String.class));
+
+		// another resolver starts over
+		assertNotNull(cache.get(new BeanELResolver(), getClass()));
+	}
+
 	public void testAppendStructure() {
 		StringBuilder s = new StringBuilder();
 		parseNode("${foo.bar}").appendStructure(s, new Bindings(null, null, null));
@@ -136,6 +184,21 @@ public class AstDotTest extends TestCase {
 		}
 	}
 
+	public void testInvokeResolved() {
+		AstDot node = parseNode("${base.bar}");
+		Class<?>[] types = { long.class };
+		for (int i = 0; i < 2; i++) {
+			assertEquals(2l, node.invoke(bindings, context, null, types, new Object[]{2l}));
+			assertEquals(1l, node.invoke(bindings, context, long.class, new Class[0], null));
+		}
+		assertEquals(2l, node.invoke(bindings, context, null, types, new Object[]{2l}));
+		// bad return type for cached method
+		try { node.invoke(bindings, context, String.class, types, new Object[]{2l}); fail(); } catch (ELException e) {}
+		// bad arg type
+		try { node.invoke(bindings, context, null, new Class[]{String.class}, new Object[]{"2"}); fail(); } catch (ELException e) {}
+		assertEquals(2l, node.invoke(bindings, context, null, types, new Object[]{2l}));
+	}
+
 	public void testGetMethodInfo() {
 		MethodInfo info = null;
 		
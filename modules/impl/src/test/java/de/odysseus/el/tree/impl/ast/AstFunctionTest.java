@@ -107,6 +107,16 @@ public class AstFunctionTest extends TestCase {
 		assertEquals(foovar(1,1,1), getNode(tree).eval(tree.bind(context.getFunctionMapper(), null), context));
 	}
 
+	public void testRebind() throws Exception {
+		Tree tree = new Builder(Feature.VARARGS).build("${vararg:f(1, null, 2)}");
+		SimpleContext other = new SimpleContext();
+		other.setFunction("vararg", "f", getClass().getMethod("foovar2", new Class[]{Integer[].class}));
+		for (int i = 0; i < 2; i++) {
+			assertEquals(3, getNode(tree).eval(tree.bind(context.getFunctionMapper(), null), null));
+			assertEquals(3, getNode(tree).eval(tree.bind(other.getFunctionMapper(), null), null));
+		}
+	}
+
 	public void testEval() {
 		Tree tree = null;
 